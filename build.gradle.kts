@@ -6,6 +6,7 @@ plugins {
     java
     application
     checkstyle
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 group = "hk.ust.comp3021"
@@ -44,6 +45,11 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-engine:5.9.0")
 }
 
+jmh {
+    jmhVersion.set("1.35")
+    jvmArgs.set(listOf("--enable-preview"))
+}
+
 checkstyle {
     toolVersion = "10.3.2"
     sourceSets = setOf(project.sourceSets.main.get())
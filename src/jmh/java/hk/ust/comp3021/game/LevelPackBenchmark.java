@@ -0,0 +1,74 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures selecting one level of a large pack with {@link LevelPack}, from opening the pack to the parsed level,
+ * with and without its index file, against reading the whole pack and splitting it into levels.
+ * <p>
+ * The pack holds levels generated by {@link BenchmarkMaps#openRoomText(int, int, int)} in the native format.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=LevelPackBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LevelPackBenchmark {
+
+    @Param({"10000"})
+    public int levels;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("levels", ".pack");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < levels; i++) {
+                writer.write(BenchmarkMaps.openRoomText(8 + i % 8, 8, -1));
+                writer.newLine();
+            }
+        }
+        if (indexed) {
+            try (var pack = LevelPack.open(file)) {
+                pack.writeIndex();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(LevelPack.indexFileOf(file));
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public GameMap selectLevel() throws IOException {
+        try (var pack = LevelPack.open(file)) {
+            return pack.getLevel(ThreadLocalRandom.current().nextInt(levels));
+        }
+    }
+
+    /**
+     * Reading the whole pack into a string and splitting it into levels, as done for a single map file.
+     */
+    @Benchmark
+    public GameMap readWholePack() throws IOException {
+        final var texts = Files.readString(file).split("\n\n");
+        return GameMap.parse(texts[ThreadLocalRandom.current().nextInt(levels)]);
+    }
+}
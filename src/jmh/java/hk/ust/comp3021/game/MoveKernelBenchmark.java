@@ -0,0 +1,98 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.ActionResult;
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many moves per second {@link AbstractSokobanGame#processAction(Action)} handles.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=MoveKernelBenchmark},
+ * and add {@code -Pjmh.profilers=gc} to see the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveKernelBenchmark {
+
+    /**
+     * A game on an open 100x100 room, with player A at the top-left corner.
+     */
+    @State(Scope.Thread)
+    public static class Game {
+        final Action right = new Move.Right(0);
+        final Action left = new Move.Left(0);
+        final Action up = new Move.Up(0);
+        GameState state;
+        BenchmarkGame game;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            state = new GameState(BenchmarkMaps.openRoom(100, 100, -1));
+            game = new BenchmarkGame(state);
+        }
+    }
+
+    /**
+     * The same game, with player A moved next to the first box of the middle row.
+     */
+    @State(Scope.Thread)
+    public static class GameNextToBox extends Game {
+        @Override
+        @Setup(Level.Trial)
+        public void setUp() {
+            super.setUp();
+            // the boxes are in the even columns of the middle row, see BenchmarkMaps#openRoomText
+            state.move(Position.of(1, 1), Position.of(1, 50));
+            state.checkpoint();
+        }
+    }
+
+    /**
+     * Player A walks one step right and back.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public ActionResult walk(Game game) {
+        game.game.process(game.right);
+        return game.game.process(game.left);
+    }
+
+    /**
+     * Player A walks into the wall above it.
+     */
+    @Benchmark
+    public ActionResult hitWall(Game game) {
+        return game.game.process(game.up);
+    }
+
+    /**
+     * Player A pushes a box one step, which is then undone.
+     */
+    @Benchmark
+    public ActionResult pushAndUndo(GameNextToBox game) {
+        final var result = game.game.process(game.right);
+        game.state.undo();
+        return result;
+    }
+
+    private static final class BenchmarkGame extends AbstractSokobanGame {
+        BenchmarkGame(GameState gameState) {
+            super(gameState);
+        }
+
+        ActionResult process(Action action) {
+            return processAction(action);
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+}
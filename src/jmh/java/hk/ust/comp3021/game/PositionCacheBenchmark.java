@@ -0,0 +1,68 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.tui.TerminalRenderingEngine;
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocations saved by the cached positions of {@link Position#of(int, int)}.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=PositionCacheBenchmark -Pjmh.profilers=gc}
+ * and compare {@code gc.alloc.rate.norm}, i.e., the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionCacheBenchmark {
+
+    private GameState state;
+    private TerminalRenderingEngine renderingEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        state = new GameState(BenchmarkMaps.openRoom(100, 100, -1));
+        renderingEngine = new TerminalRenderingEngine(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Visits every cell of the board with cached positions.
+     */
+    @Benchmark
+    public void scanCached(Blackhole blackhole) {
+        for (int y = 0; y < state.getMapMaxHeight(); y++) {
+            for (int x = 0; x < state.getMapMaxWidth(); x++) {
+                blackhole.consume(state.getEntity(Position.of(x, y)));
+            }
+        }
+    }
+
+    /**
+     * Visits every cell of the board with a new position for each cell, as the game did before.
+     */
+    @Benchmark
+    public void scanAllocated(Blackhole blackhole) {
+        for (int y = 0; y < state.getMapMaxHeight(); y++) {
+            for (int x = 0; x < state.getMapMaxWidth(); x++) {
+                final var position = new Position(x, y);
+                blackhole.consume(position);
+                blackhole.consume(state.getEntity(position));
+            }
+        }
+    }
+
+    /**
+     * Renders the whole board.
+     */
+    @Benchmark
+    public void render() {
+        renderingEngine.render(state);
+    }
+}
@@ -0,0 +1,166 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.*;
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the delta-based undo log of {@link GameState} with the full-board snapshots used previously.
+ * <p>
+ * Each trial first plays {@code historyLength} moves with a checkpoint after each of them, then measures a
+ * move-checkpoint-undo round trip on top of that history. The heap retained by the history is printed at the end of
+ * the trial. Keeping 100k snapshots of a 100x100 board needs tens of gigabytes, so the snapshot history is capped at
+ * {@link UndoHistoryBenchmark#SNAPSHOT_HISTORY_CAP} moves and its retained heap is extrapolated.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=UndoHistoryBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UndoHistoryBenchmark {
+
+    private static final int SNAPSHOT_HISTORY_CAP = 2_000;
+
+    @Param({"delta", "snapshot"})
+    public String history;
+
+    @Param({"100"})
+    public int mapSize;
+
+    @Param({"100000"})
+    public int historyLength;
+
+    private GameState state;
+    private SnapshotHistory snapshots;
+    private int recordedMoves;
+    private long heapBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var map = BenchmarkMaps.openRoom(mapSize, mapSize, -1);
+        heapBefore = usedHeap();
+        if (history.equals("delta")) {
+            state = new GameState(map);
+            recordedMoves = historyLength;
+            for (int i = 0; i < recordedMoves; i++) {
+                stepDelta(i);
+            }
+        } else {
+            snapshots = new SnapshotHistory(map);
+            recordedMoves = Math.min(historyLength, SNAPSHOT_HISTORY_CAP);
+            for (int i = 0; i < recordedMoves; i++) {
+                snapshots.step(i);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void reportHeap() {
+        final var retained = usedHeap() - heapBefore;
+        final var perMove = (double) retained / recordedMoves;
+        System.out.printf("%n[%s] retained heap after %d moves: %.1f MB (%.0f bytes/move, %.1f MB extrapolated to %d moves)%n",
+            history, recordedMoves, retained / 1e6, perMove, perMove * historyLength / 1e6, historyLength);
+        // keep the history reachable until it has been measured
+        if (state == null && snapshots == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    @Benchmark
+    public GameState moveCheckpointUndo() {
+        if (state != null) {
+            stepDelta(recordedMoves);
+            state.undo();
+        } else {
+            snapshots.step(recordedMoves);
+            snapshots.undo();
+        }
+        return state;
+    }
+
+    /**
+     * Player A walks back and forth along the first row of the room.
+     */
+    private void stepDelta(int step) {
+        final var from = state.getPlayerPositionById(0);
+        final var to = Position.of((step % 2 == 0) ? from.x() + 1 : from.x() - 1, from.y());
+        state.move(from, to);
+        state.checkpoint();
+    }
+
+    private static long usedHeap() {
+        final var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The undo history previously used by {@link GameState}: every checkpoint deep copies the whole board.
+     */
+    private static final class SnapshotHistory {
+        private final Entity[][] board;
+        private final Stack<Entity[][]> history = new Stack<>();
+        private int playerX = 1;
+
+        SnapshotHistory(GameMap map) {
+            board = new Entity[map.getMaxHeight()][map.getMaxWidth()];
+            for (int i = 0; i < board.length; i++) {
+                for (int j = 0; j < board[0].length; j++) {
+                    board[i][j] = copyOf(map.getEntity(Position.of(j, i)));
+                }
+            }
+            checkpoint();
+        }
+
+        void step(int step) {
+            final var toX = (step % 2 == 0) ? playerX + 1 : playerX - 1;
+            board[1][toX] = board[1][playerX];
+            board[1][playerX] = new Empty();
+            playerX = toX;
+            checkpoint();
+        }
+
+        void checkpoint() {
+            final var copy = new Entity[board.length][board[0].length];
+            for (int i = 0; i < copy.length; i++) {
+                for (int j = 0; j < copy[0].length; j++) {
+                    copy[i][j] = copyOf(board[i][j]);
+                }
+            }
+            history.push(copy);
+        }
+
+        void undo() {
+            if (history.size() > 1) {
+                history.pop();
+                final var last = history.peek();
+                for (int i = 0; i < last.length; i++) {
+                    for (int j = 0; j < last[0].length; j++) {
+                        board[i][j] = copyOf(last[i][j]);
+                        if (board[i][j] instanceof Player) {
+                            playerX = j;
+                        }
+                    }
+                }
+            }
+        }
+
+        private static Entity copyOf(Entity entity) {
+            return switch (entity) {
+                case Player p -> new Player(p.getId());
+                case Box b -> new Box(b.getPlayerId());
+                case Wall ignored -> new Wall();
+                case Empty ignored -> new Empty();
+                case null -> null;
+            };
+        }
+    }
+}
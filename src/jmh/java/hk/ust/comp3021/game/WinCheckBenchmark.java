@@ -0,0 +1,54 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Box;
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link GameState#isWin()}, which keeps a running count of boxes outside the destinations,
+ * with the full-board scan it replaces, on large maps.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=WinCheckBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WinCheckBenchmark {
+
+    @Param({"100", "1000"})
+    public int mapSize;
+
+    private GameState state;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        state = new GameState(BenchmarkMaps.openRoom(mapSize, mapSize, -1));
+    }
+
+    @Benchmark
+    public boolean incremental() {
+        return state.isWin();
+    }
+
+    /**
+     * The check previously done by {@link GameState#isWin()}: every cell is visited,
+     * and every box is looked up in the set of destinations.
+     */
+    @Benchmark
+    public boolean fullScan() {
+        for (int i = 0; i < state.getMapMaxHeight(); i++) {
+            for (int j = 0; j < state.getMapMaxWidth(); j++) {
+                if ((state.getEntity(new Position(j, i)) instanceof Box)
+                    && (!state.getDestinations().contains(new Position(j, i)))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many push-states {@link Solver#solve(Duration)} expands with and without macro moves,
+ * see {@link Solver#setMacroMoves(boolean)}.
+ * <p>
+ * Each iteration solves the map once from scratch, so the {@code states} counter is the number of push-states
+ * expanded by one solve, the figure to compare, next to the time it took.
+ * The corridor maps are generated by {@link BenchmarkMaps#corridorRoomText(int, int)}, where every box has to pass
+ * a long corridor into a goal room; on a built-in map without tunnels both modes should expand the same states.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=MacroMoveBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MacroMoveBenchmark {
+
+    @Param({"true", "false"})
+    public boolean macroMoves;
+
+    /**
+     * A built-in map, or {@code corridor-<boxes>-<length>} for a map generated by
+     * {@link BenchmarkMaps#corridorRoomText(int, int)}.
+     */
+    @Param({"map01", "corridor-4-6", "corridor-5-12"})
+    public String map;
+
+    @Param({"10000"})
+    public int budgetMillis;
+
+    private Solver solver;
+    private Duration budget;
+
+    /**
+     * The number of push-states expanded per solve.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long states;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            states = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        solver = new Solver(loadMap(map));
+        solver.setMacroMoves(macroMoves);
+        budget = Duration.ofMillis(budgetMillis);
+    }
+
+    @Benchmark
+    public SolverResult solve(Counters counters) {
+        final var result = solver.solve(budget);
+        counters.states += result.getExploredStates();
+        return result;
+    }
+
+    private static GameMap loadMap(String name) {
+        if (!name.startsWith("corridor-")) {
+            return BenchmarkMaps.builtIn(name);
+        }
+        final var size = name.substring("corridor-".length()).split("-");
+        return GameMap.parse(BenchmarkMaps.corridorRoomText(Integer.parseInt(size[0]), Integer.parseInt(size[1])));
+    }
+}
@@ -0,0 +1,77 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many push-states per second {@link Solver#solve(Duration, int)} expands with 1, 2, 4 and 8 threads.
+ * <p>
+ * Each invocation solves the map from scratch within the time budget, so maps that cannot be solved in time still
+ * measure the search rate. The {@code states} counter is the rate to compare across thread counts.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=ParallelSolverBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelSolverBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * A built-in map, or {@code scattered-<width>x<height>-<boxes>} for a map generated by
+     * {@link BenchmarkMaps#scatteredRoomText(int, int, int, long)}.
+     */
+    @Param({"map01", "scattered-14x12-4", "scattered-40x40-8"})
+    public String map;
+
+    @Param({"500"})
+    public int budgetMillis;
+
+    private Solver solver;
+    private Duration budget;
+
+    /**
+     * The number of push-states expanded, reported by JMH as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long states;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            states = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        solver = new Solver(loadMap(map));
+        budget = Duration.ofMillis(budgetMillis);
+    }
+
+    @Benchmark
+    public SolverResult solve(Counters counters) {
+        final var result = solver.solve(budget, threads);
+        counters.states += result.getExploredStates();
+        return result;
+    }
+
+    private static GameMap loadMap(String name) {
+        if (!name.startsWith("scattered-")) {
+            return BenchmarkMaps.builtIn(name);
+        }
+        final var size = name.substring("scattered-".length()).split("[x-]");
+        return GameMap.parse(BenchmarkMaps.scatteredRoomText(
+            Integer.parseInt(size[0]), Integer.parseInt(size[1]), Integer.parseInt(size[2]), 7));
+    }
+}
@@ -0,0 +1,81 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.utils.BenchmarkMaps;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the search algorithms of {@link Solver} by time and by the number of push-states they expand,
+ * see {@link Solver#setAlgorithm(SearchAlgorithm)}.
+ * <p>
+ * Each iteration solves the map once from scratch with macro moves turned off, which
+ * {@link SearchAlgorithm#BIDIRECTIONAL} does not take, so all algorithms find the same number of pushes and
+ * the {@code states} counter is comparable. The bundled maps are solved by every algorithm within a few states;
+ * the corridor map generated by {@link BenchmarkMaps#corridorRoomText(int, int)} needs a real search.
+ * <p>
+ * Run with {@code gradle jmh -Pjmh.includes=SearchAlgorithmBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchAlgorithmBenchmark {
+
+    @Param({"A_STAR", "IDA_STAR", "BIDIRECTIONAL"})
+    public SearchAlgorithm algorithm;
+
+    /**
+     * A built-in map, or {@code corridor-<boxes>-<length>} for a map generated by
+     * {@link BenchmarkMaps#corridorRoomText(int, int)}.
+     */
+    @Param({"map00", "map01", "corridor-4-6"})
+    public String map;
+
+    @Param({"10000"})
+    public int budgetMillis;
+
+    private Solver solver;
+    private Duration budget;
+
+    /**
+     * The number of push-states expanded per solve.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long states;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            states = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        solver = new Solver(loadMap(map));
+        solver.setMacroMoves(false);
+        solver.setAlgorithm(algorithm);
+        budget = Duration.ofMillis(budgetMillis);
+    }
+
+    @Benchmark
+    public SolverResult solve(Counters counters) {
+        final var result = solver.solve(budget);
+        counters.states += result.getExploredStates();
+        return result;
+    }
+
+    private static GameMap loadMap(String name) {
+        if (!name.startsWith("corridor-")) {
+            return BenchmarkMaps.builtIn(name);
+        }
+        final var size = name.substring("corridor-".length()).split("-");
+        return GameMap.parse(BenchmarkMaps.corridorRoomText(Integer.parseInt(size[0]), Integer.parseInt(size[1])));
+    }
+}
@@ -0,0 +1,158 @@
+package hk.ust.comp3021.utils;
+
+import hk.ust.comp3021.game.GameMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generators of large game maps for benchmarking.
+ */
+public class BenchmarkMaps {
+
+    /**
+     * Generate a rectangular room surrounded by walls.
+     * Player A stands at the top-left corner of the room.
+     * One box of player A is placed in every other column of the middle row,
+     * and the same number of destinations is placed in the row below it.
+     *
+     * @param width     The width of the map, including the walls.
+     * @param height    The height of the map, including the walls.
+     * @param undoLimit The undo limit of the map.
+     * @return The map text.
+     */
+    public static String openRoomText(int width, int height, int undoLimit) {
+        final var builder = new StringBuilder();
+        builder.append(undoLimit).append('\n');
+        final var boxRow = height / 2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final char c;
+                if (y == 0 || x == 0 || y == height - 1 || x == width - 1) {
+                    c = '#';
+                } else if (y == 1 && x == 1) {
+                    c = 'A';
+                } else if (x % 2 == 0 && x < width - 2 && y == boxRow) {
+                    c = 'a';
+                } else if (x % 2 == 0 && x < width - 2 && y == boxRow + 1) {
+                    c = '@';
+                } else {
+                    c = '.';
+                }
+                builder.append(c);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param width     The width of the map, including the walls.
+     * @param height    The height of the map, including the walls.
+     * @param undoLimit The undo limit of the map.
+     * @return The parsed map generated by {@link BenchmarkMaps#openRoomText(int, int, int)}.
+     */
+    public static GameMap openRoom(int width, int height, int undoLimit) {
+        return GameMap.parse(openRoomText(width, height, undoLimit));
+    }
+
+    /**
+     * Generate a rectangular room surrounded by walls, with boxes and destinations scattered at random.
+     * Player A stands at the top-left corner of the room.
+     * Boxes and destinations are kept off the cells next to the walls, so that no box starts stuck.
+     *
+     * @param width     The width of the map, including the walls.
+     * @param height    The height of the map, including the walls.
+     * @param boxes     The number of boxes of player A, and also the number of destinations.
+     * @param seed      The seed of the random placement.
+     * @return The map text.
+     */
+    public static String scatteredRoomText(int width, int height, int boxes, long seed) {
+        final var random = new Random(seed);
+        final var grid = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid[y][x] = (y == 0 || x == 0 || y == height - 1 || x == width - 1) ? '#' : '.';
+            }
+        }
+        grid[1][1] = 'A';
+        for (char c : new char[]{'a', '@'}) {
+            for (int placed = 0; placed < boxes; ) {
+                final int x = 2 + random.nextInt(width - 4);
+                final int y = 2 + random.nextInt(height - 4);
+                if (grid[y][x] == '.') {
+                    grid[y][x] = c;
+                    placed++;
+                }
+            }
+        }
+        final var builder = new StringBuilder();
+        builder.append(-1).append('\n');
+        for (char[] row : grid) {
+            builder.append(row).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Generate a hall of boxes linked to a goal room by a long corridor.
+     * Player A stands at the top-left corner of the hall, with one box of player A in every other column of the
+     * second row of the hall. A vertical corridor one cell wide leads down from the middle of the hall to a room
+     * whose bottom row holds a destination in every other column.
+     * Every box has to be pushed through the whole corridor, which makes the search deep.
+     *
+     * @param boxes          The number of boxes of player A, and also the number of destinations.
+     * @param corridorLength The number of cells of the corridor between the walls of the hall and the room.
+     * @return The map text.
+     */
+    public static String corridorRoomText(int boxes, int corridorLength) {
+        final var width = 2 * boxes + 3;
+        final var door = width / 2;
+        final var rows = new ArrayList<String>();
+        rows.add("#".repeat(width));
+        rows.add("#A" + ".".repeat(width - 3) + "#");
+        rows.add(alternating(width, 'a', 2, 2 * boxes));
+        rows.add("#" + ".".repeat(width - 2) + "#");
+        rows.add("#" + ".".repeat(width - 2) + "#");
+        final var wallWithDoor = "#".repeat(door) + "." + "#".repeat(width - door - 1);
+        rows.add(wallWithDoor);
+        for (int i = 0; i < corridorLength; i++) {
+            rows.add(" ".repeat(door - 1) + "#.#");
+        }
+        rows.add(wallWithDoor);
+        rows.add("#" + ".".repeat(width - 2) + "#");
+        rows.add("#" + ".".repeat(width - 2) + "#");
+        rows.add(alternating(width, '@', 1, 2 * boxes - 1));
+        rows.add("#".repeat(width));
+        return -1 + "\n" + String.join("\n", rows) + "\n";
+    }
+
+    /**
+     * @return a row of the given width surrounded by walls, with the character in every other column from first to last.
+     */
+    private static String alternating(int width, char c, int first, int last) {
+        final var builder = new StringBuilder("#");
+        for (int x = 1; x < width - 1; x++) {
+            builder.append((x >= first && x <= last && (x - first) % 2 == 0) ? c : '.');
+        }
+        return builder.append('#').toString();
+    }
+
+    /**
+     * @param name The name of a built-in map in the resources, such as "map01".
+     * @return The parsed map.
+     */
+    public static GameMap builtIn(String name) {
+        try (var stream = BenchmarkMaps.class.getClassLoader().getResourceAsStream(name + ".map")) {
+            if (stream == null) {
+                throw new IllegalArgumentException("No such built-in map: " + name);
+            }
+            return GameMap.parse(new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
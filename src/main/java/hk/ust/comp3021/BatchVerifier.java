@@ -0,0 +1,230 @@
+package hk.ust.comp3021;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.solver.Solver;
+import hk.ust.comp3021.solver.SolverResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verifies every map file of a directory: each one is loaded as by {@link SokobanGameFactory#loadGameMap(Path)}
+ * and solved by {@link Solver} within a time budget per level.
+ * <p>
+ * The files are streamed from the directory and handed to a fixed pool of threads, one level per thread,
+ * so the throughput scales with the number of cores. At most twice as many levels as threads are in flight
+ * at a time, so a directory of any size is verified in bounded memory, and each solver is limited to its share
+ * of the heap, see {@link Solver#setMemoryLimit(long)}. A level that still fails, even by running out of heap,
+ * is reported with its status like any other, without stopping the others.
+ * <p>
+ * Each level gets one line in the results file as soon as it is done, so the lines are in order of completion:
+ * the file name, the {@link Status}, the number of moves and pushes of the solution (-1 if there is none)
+ * and the wall time in milliseconds, separated by tabs.
+ * Macro moves are turned off, so the pushes are the minimum needed, see {@link Solver#setMacroMoves(boolean)}.
+ */
+public class BatchVerifier {
+
+    /**
+     * The glob of the files verified in a directory.
+     */
+    public static final String MAP_FILES = "*.map";
+
+    private final Duration budget;
+    private final int parallelism;
+    private final long memoryLimit;
+
+    /**
+     * The outcome of verifying a level.
+     */
+    public enum Status {
+        /**
+         * The level has been solved.
+         */
+        SOLVED,
+        /**
+         * The level cannot be solved.
+         */
+        UNSOLVABLE,
+        /**
+         * The solver ran out of the time budget.
+         */
+        TIMEOUT,
+        /**
+         * The solver ran out of memory, see {@link Solver#setMemoryLimit(long)}.
+         */
+        OUT_OF_MEMORY,
+        /**
+         * The file cannot be read or is not a valid map, see {@link GameMap#parse(String)}.
+         */
+        INVALID,
+        /**
+         * Verifying the level failed unexpectedly.
+         */
+        ERROR
+    }
+
+    /**
+     * The result of verifying a level.
+     *
+     * @param level    The file name of the level.
+     * @param status   The outcome.
+     * @param moves    The number of moves of the solution, or -1 if the level has not been solved.
+     * @param pushes   The number of pushes of the solution, or -1 if the level has not been solved.
+     * @param wallTime The wall time spent on loading and solving the level.
+     */
+    public record Result(@NotNull String level, @NotNull Status status, int moves, int pushes,
+                         @NotNull Duration wallTime) {
+
+        /**
+         * @return The line of the result in the results file, without the line separator.
+         */
+        public @NotNull String toLine() {
+            return String.join("\t", level, status.name(), String.valueOf(moves), String.valueOf(pushes),
+                    String.valueOf(wallTime.toMillis()));
+        }
+    }
+
+    /**
+     * @param budget      The maximum wall time to spend on solving each level.
+     * @param parallelism The number of levels to verify at a time, which share the maximum heap of the JVM.
+     * @throws IllegalArgumentException if parallelism is less than 1.
+     */
+    public BatchVerifier(@NotNull Duration budget, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.budget = budget;
+        this.parallelism = parallelism;
+        this.memoryLimit = Math.max(1, Runtime.getRuntime().maxMemory() / parallelism);
+    }
+
+    /**
+     * Verify every map file of a directory, see {@link BatchVerifier#MAP_FILES}.
+     *
+     * @param directory   The directory containing the map files, sub-directories are not visited.
+     * @param resultsFile The file to write the results to, replacing its content.
+     * @return The number of levels with each status.
+     * @throws IOException          When the directory cannot be listed or the results file cannot be written.
+     * @throws InterruptedException When interrupted while waiting for the levels to be verified.
+     */
+    public @NotNull Map<Status, Integer> verify(@NotNull Path directory, @NotNull Path resultsFile)
+            throws IOException, InterruptedException {
+        final Map<Status, Integer> counts = new EnumMap<>(Status.class);
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final Semaphore inFlight = new Semaphore(parallelism * 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (BufferedWriter writer = Files.newBufferedWriter(resultsFile);
+             DirectoryStream<Path> files = Files.newDirectoryStream(directory, MAP_FILES)) {
+            for (Path file : files) {
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        final Result result = verifyReportingFailures(file);
+                        synchronized (counts) {
+                            counts.merge(result.status(), 1, Integer::sum);
+                            writer.write(result.toLine());
+                            writer.newLine();
+                        }
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(parallelism * 2);
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(budget.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        }
+        return counts;
+    }
+
+    /**
+     * Verify a map file, turning any failure into the result of the level, so that one level cannot stop the others.
+     */
+    private Result verifyReportingFailures(Path mapFile) {
+        final long startTime = System.nanoTime();
+        try {
+            return verify(mapFile);
+        } catch (RuntimeException | OutOfMemoryError e) { // the memory limit is an estimate, and levels share the heap
+            final Status status = (e instanceof OutOfMemoryError) ? Status.OUT_OF_MEMORY : Status.ERROR;
+            return new Result(mapFile.getFileName().toString(), status, -1, -1,
+                    Duration.ofNanos(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * Verify a single map file on the calling thread, with the share of the heap of one thread.
+     *
+     * @param mapFile The map file.
+     * @return The result of the level.
+     */
+    public @NotNull Result verify(@NotNull Path mapFile) {
+        final long startTime = System.nanoTime();
+        final String level = mapFile.getFileName().toString();
+        final GameMap gameMap;
+        try {
+            gameMap = SokobanGameFactory.loadGameMap(mapFile);
+        } catch (IOException | RuntimeException e) { // user-submitted files may be malformed in any way
+            return new Result(level, Status.INVALID, -1, -1, Duration.ofNanos(System.nanoTime() - startTime));
+        }
+        final var solver = new Solver(gameMap);
+        solver.setMacroMoves(false);
+        solver.setMemoryLimit(memoryLimit);
+        final SolverResult result = solver.solve(budget);
+        final Duration wallTime = Duration.ofNanos(System.nanoTime() - startTime);
+        if (result instanceof SolverResult.Solved solved) {
+            return new Result(level, Status.SOLVED, solved.getMoves().size(), solved.getPushes(), wallTime);
+        }
+        final Status status;
+        if (result instanceof SolverResult.Unsolvable) {
+            status = Status.UNSOLVABLE;
+        } else if (result instanceof SolverResult.Timeout) {
+            status = Status.TIMEOUT;
+        } else {
+            status = Status.OUT_OF_MEMORY;
+        }
+        return new Result(level, status, -1, -1, wallTime);
+    }
+
+    /**
+     * Verify the map files of a directory from the command line.
+     *
+     * @param args The directory, the results file, and optionally the budget per level in milliseconds
+     *             (10000 by default) and the number of threads (the number of processors by default).
+     */
+    public static void main(@NotNull String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchVerifier <directory> <results file> [budget millis] [threads]");
+            System.exit(1);
+        }
+        final var budget = Duration.ofMillis(args.length > 2 ? Long.parseLong(args[2]) : 10000);
+        final int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        try {
+            final var counts = new BatchVerifier(budget, threads).verify(Path.of(args[0]), Path.of(args[1]));
+            System.out.println(counts);
+        } catch (IOException e) {
+            System.err.println("Failed to verify levels: " + e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package hk.ust.comp3021;
 
 import hk.ust.comp3021.game.GameMap;
 import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.LevelPack;
 import hk.ust.comp3021.game.SokobanGame;
 import hk.ust.comp3021.tui.TerminalInputEngine;
 import hk.ust.comp3021.tui.TerminalRenderingEngine;
@@ -58,4 +59,18 @@ public class SokobanGameFactory {
         return GameMap.parse(fileContent);
     }
 
+    /**
+     * Load one level of a pack without reading the others, see {@link LevelPack}.
+     *
+     * @param packFile The file containing the levels, whose format is given by its name, see {@link LevelPack.Format#of(Path)}.
+     * @param level    The index of the level, starting from 0.
+     * @return The parsed game map.
+     * @throws IOException When there is an issue loading the file.
+     */
+    public static @NotNull GameMap loadGameMap(@NotNull Path packFile, int level) throws IOException {
+        try (var pack = LevelPack.open(packFile)) {
+            return pack.getLevel(level);
+        }
+    }
+
 }
@@ -3,7 +3,7 @@ package hk.ust.comp3021.actions;
 /**
  * An action performed by a player.
  */
-public abstract sealed class Action permits InvalidInput, Move, Undo, Exit {
+public abstract sealed class Action permits InvalidInput, Move, Undo, Exit, Hint {
 
     protected final int initiator;
 
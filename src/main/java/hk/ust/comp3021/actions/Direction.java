@@ -0,0 +1,50 @@
+package hk.ust.comp3021.actions;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The direction of a {@link Move}, as a unit vector on the game map.
+ */
+public enum Direction {
+    UP(0, -1),
+    DOWN(0, 1),
+    LEFT(-1, 0),
+    RIGHT(1, 0);
+
+    private final int dx;
+    private final int dy;
+
+    Direction(int dx, int dy) {
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    /**
+     * @return The horizontal displacement.
+     */
+    public int getDx() {
+        return dx;
+    }
+
+    /**
+     * @return The vertical displacement.
+     */
+    public int getDy() {
+        return dy;
+    }
+
+    /**
+     * Create the move action in this direction.
+     *
+     * @param initiator The id of the player who performs the move.
+     * @return The move action.
+     */
+    public @NotNull Move toMove(int initiator) {
+        return switch (this) {
+            case UP -> new Move.Up(initiator);
+            case DOWN -> new Move.Down(initiator);
+            case LEFT -> new Move.Left(initiator);
+            case RIGHT -> new Move.Right(initiator);
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package hk.ust.comp3021.actions;
+
+/**
+ * Denotes a request for a hint of the next move.
+ */
+public final class Hint extends Action {
+    /**
+     * @param initiator The id of the player who asks for the hint.
+     */
+    public Hint(int initiator) {
+        super(initiator);
+    }
+}
@@ -19,6 +19,11 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
      */
     public abstract @NotNull Position nextPosition(@NotNull Position currentPosition);
 
+    /**
+     * @return The direction of the move.
+     */
+    public abstract @NotNull Direction getDirection();
+
     /**
      * The action of moving down.
      */
@@ -31,9 +36,14 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
             super(initiator);
         }
 
+        @Override
+        public @NotNull Direction getDirection() {
+            return Direction.DOWN;
+        }
+
         @Override
         public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return new Position(currentPosition.x(), currentPosition.y()+1);
+            return Position.of(currentPosition.x(), currentPosition.y()+1);
         }
     }
 
@@ -48,9 +58,14 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
             super(initiator);
         }
 
+        @Override
+        public @NotNull Direction getDirection() {
+            return Direction.LEFT;
+        }
+
         @Override
         public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return new Position(currentPosition.x()-1, currentPosition.y());
+            return Position.of(currentPosition.x()-1, currentPosition.y());
         }
     }
 
@@ -65,9 +80,14 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
             super(initiator);
         }
 
+        @Override
+        public @NotNull Direction getDirection() {
+            return Direction.RIGHT;
+        }
+
         @Override
         public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return new Position(currentPosition.x()+1, currentPosition.y());
+            return Position.of(currentPosition.x()+1, currentPosition.y());
         }
     }
 
@@ -82,9 +102,14 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
             super(initiator);
         }
 
+        @Override
+        public @NotNull Direction getDirection() {
+            return Direction.UP;
+        }
+
         @Override
         public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return new Position(currentPosition.x(), currentPosition.y()-1);
+            return Position.of(currentPosition.x(), currentPosition.y()-1);
         }
     }
 }
@@ -23,4 +23,14 @@ public final class Box extends Entity {
     public int getPlayerId() {
         return playerId;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof Box box) && (box.playerId == playerId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 'a' + playerId;
+    }
 }
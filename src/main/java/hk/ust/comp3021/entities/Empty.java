@@ -4,4 +4,14 @@ package hk.ust.comp3021.entities;
  * Denote an empty cell.
  */
 public final class Empty extends Entity {
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Empty;
+    }
+
+    @Override
+    public int hashCode() {
+        return '.';
+    }
 }
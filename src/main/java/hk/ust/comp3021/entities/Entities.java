@@ -0,0 +1,71 @@
+package hk.ust.comp3021.entities;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A registry of shared entity instances.
+ * Entities carry no per-cell identity, so the whole game uses one {@link Wall}, one {@link Empty},
+ * and one {@link Player} and {@link Box} for each of the 26 player ids, instead of allocating new objects
+ * whenever a board is built or changed.
+ */
+public final class Entities {
+    /**
+     * The maximum number of players in a game.
+     */
+    public static final int MAX_PLAYERS = 26;
+
+    private static final Wall WALL = new Wall();
+    private static final Empty EMPTY = new Empty();
+    private static final Player[] PLAYERS = new Player[MAX_PLAYERS];
+    private static final Box[] BOXES = new Box[MAX_PLAYERS];
+
+    static {
+        for (int i = 0; i < MAX_PLAYERS; i++) {
+            PLAYERS[i] = new Player(i);
+            BOXES[i] = new Box(i);
+        }
+    }
+
+    private Entities() {
+    }
+
+    /**
+     * @return the shared wall.
+     */
+    public static @NotNull Wall wall() {
+        return WALL;
+    }
+
+    /**
+     * @return the shared empty cell.
+     */
+    public static @NotNull Empty empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param id id of the player.
+     * @return the shared player with the given id.
+     * @throws IllegalArgumentException if the id is not in [0, 26).
+     */
+    public static @NotNull Player player(int id) {
+        checkId(id);
+        return PLAYERS[id];
+    }
+
+    /**
+     * @param playerId the id of the player that can move the box.
+     * @return the shared box of the given player.
+     * @throws IllegalArgumentException if the id is not in [0, 26).
+     */
+    public static @NotNull Box box(int playerId) {
+        checkId(playerId);
+        return BOXES[playerId];
+    }
+
+    private static void checkId(int id) {
+        if (id < 0 || id >= MAX_PLAYERS) {
+            throw new IllegalArgumentException("Invalid player id: " + id);
+        }
+    }
+}
@@ -23,4 +23,14 @@ public final class Player extends Entity {
     public int getId() {
         return id;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof Player player) && (player.id == id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 'A' + id;
+    }
 }
@@ -4,4 +4,14 @@ package hk.ust.comp3021.entities;
  * Denotes a wall.
  */
 public final class Wall extends Entity {
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Wall;
+    }
+
+    @Override
+    public int hashCode() {
+        return '#';
+    }
 }
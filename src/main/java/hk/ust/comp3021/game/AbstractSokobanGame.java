@@ -34,136 +34,17 @@ public abstract class AbstractSokobanGame implements SokobanGame {
         if (action instanceof Exit) {
             state.changeExitCondition();
             return new ActionResult.Success(action);
-        } else if (action instanceof InvalidInput) {
+        } else if (action instanceof InvalidInput || action instanceof Hint) { // the state is left unchanged
             return new ActionResult.Success(action);
-        } else if (action instanceof Move.Up) {
-            // does player exist?
-            Position position = state.getPlayerPositionById(action.getInitiator());
-            if (position == null) {
-                return new ActionResult.Failed(action, StringResources.PLAYER_NOT_FOUND);
-            }
-            // check upper location // case 1: Box
-            if (state.getEntity(new Position(position.x(), position.y()-1)) instanceof Box) {
-                int id = ((Box)state.getEntity(new Position(position.x(), position.y()-1))).getPlayerId();
-                // does the box belongs to you?
-                if (id == action.getInitiator()) { // further check the upper position
-                    // moveable only when there is empty
-                    if (state.getEntity(new Position(position.x(), position.y()-2)) instanceof Empty) {
-                        state.move(new Position(position.x(), position.y()-1), new Position(position.x(), position.y()-2));
-                        state.move(new Position(position.x(), position.y()), new Position(position.x(), position.y()-1));
-                        state.checkpoint();
-                        return new ActionResult.Success(action);
-                    } else {
-                        return new ActionResult.Failed(action, "Failed to push the box.");
-                    }
-                } else {
-                    return new ActionResult.Failed(action, "You cannot move other players' boxes.");
-                }
-            } else if (state.getEntity(new Position(position.x(), position.y()-1)) instanceof Wall) { // case 2: Wall
-                return new ActionResult.Failed(action, "You hit a wall.");
-            } else if (state.getEntity(new Position(position.x(), position.y()-1)) instanceof Player) { // case 3: Player
-                return new ActionResult.Failed(action, "You hit another player.");
-            } else  { // case 4: Empty
-                state.move(new Position(position.x(), position.y()), new Position(position.x(), position.y()-1));
-                state.checkpoint();
-                return new ActionResult.Success(action);
-            }
-        } else if (action instanceof Move.Down) {
-            // does player exist?
-            Position position = state.getPlayerPositionById(action.getInitiator());
-            if (position == null) {
-                return new ActionResult.Failed(action, StringResources.PLAYER_NOT_FOUND);
-            }
-            // check upper location // case 1: Box
-            if (state.getEntity(new Position(position.x(), position.y() + 1)) instanceof Box) {
-                int id = ((Box) state.getEntity(new Position(position.x(), position.y() + 1))).getPlayerId();
-                // does the box belongs to you?
-                if (id == action.getInitiator()) { // further check the lower position
-                    // moveable only when there is empty
-                    if (state.getEntity(new Position(position.x(), position.y() + 2)) instanceof Empty) {
-                        state.move(new Position(position.x(), position.y() + 1), new Position(position.x(), position.y() + 2));
-                        state.move(new Position(position.x(), position.y()), new Position(position.x(), position.y() + 1));
-                        state.checkpoint();
-                        return new ActionResult.Success(action);
-                    } else {
-                        return new ActionResult.Failed(action, "Failed to push the box.");
-                    }
-                } else {
-                    return new ActionResult.Failed(action, "You cannot move other players' boxes.");
-                }
-            } else if (state.getEntity(new Position(position.x(), position.y() + 1)) instanceof Wall) { // case 2: Wall
-                return new ActionResult.Failed(action, "You hit a wall.");
-            } else if (state.getEntity(new Position(position.x(), position.y() + 1)) instanceof Player) { // case 3: Player
-                return new ActionResult.Failed(action, "You hit another player.");
-            } else { // case 4: Empty
-                state.move(new Position(position.x(), position.y()), new Position(position.x(), position.y() + 1));
-                state.checkpoint();
-                return new ActionResult.Success(action);
-            }
-        } else if (action instanceof Move.Left)  {
-            // does player exist?
-            Position position = state.getPlayerPositionById(action.getInitiator());
-            if (position == null) {
-                return new ActionResult.Failed(action, StringResources.PLAYER_NOT_FOUND);
-            }
-            // check upper location // case 1: Box
-            if (state.getEntity(new Position(position.x()-1, position.y())) instanceof Box) {
-                int id = ((Box)state.getEntity(new Position(position.x()-1, position.y()))).getPlayerId();
-                // does the box belongs to you?
-                if (id == action.getInitiator()) { // further check the left position
-                    // moveable only when there is empty
-                    if (state.getEntity(new Position(position.x()-2, position.y())) instanceof Empty) {
-                        state.move(new Position(position.x()-1, position.y()), new Position(position.x()-2, position.y()));
-                        state.move(new Position(position.x(), position.y()), new Position(position.x()-1, position.y()));
-                        state.checkpoint();
-                        return new ActionResult.Success(action);
-                    } else {
-                        return new ActionResult.Failed(action, "Failed to push the box.");
-                    }
-                } else {
-                    return new ActionResult.Failed(action, "You cannot move other players' boxes.");
-                }
-            } else if (state.getEntity(new Position(position.x()-1, position.y())) instanceof Wall) { // case 2: Wall
-                return new ActionResult.Failed(action, "You hit a wall.");
-            } else if (state.getEntity(new Position(position.x()-1, position.y())) instanceof Player) { // case 3: Player
-                return new ActionResult.Failed(action, "You hit another player.");
-            } else  { // case 4: Empty
-                state.move(new Position(position.x(), position.y()), new Position(position.x()-1, position.y()));
-                state.checkpoint();
-                return new ActionResult.Success(action);
-            }
-        } else if (action instanceof Move.Right) {
-            // does player exist?
-            Position position = state.getPlayerPositionById(action.getInitiator());
-            if (position == null) {
-                return new ActionResult.Failed(action, StringResources.PLAYER_NOT_FOUND);
-            }
-            // check upper location // case 1: Box
-            if (state.getEntity(new Position(position.x()+1, position.y())) instanceof Box) {
-                int id = ((Box)state.getEntity(new Position(position.x()+1, position.y()))).getPlayerId();
-                // does the box belongs to you?
-                if (id == action.getInitiator()) { // further check the right position
-                    // moveable only when there is empty
-                    if (state.getEntity(new Position(position.x()+2, position.y())) instanceof Empty) {
-                        state.move(new Position(position.x()+1, position.y()), new Position(position.x()+2, position.y()));
-                        state.move(new Position(position.x(), position.y()), new Position(position.x()+1, position.y()));
-                        state.checkpoint();
-                        return new ActionResult.Success(action);
-                    } else {
-                        return new ActionResult.Failed(action, "Failed to push the box.");
-                    }
-                } else {
-                    return new ActionResult.Failed(action, "You cannot move other players' boxes.");
-                }
-            } else if (state.getEntity(new Position(position.x()+1, position.y())) instanceof Wall) { // case 2: Wall
-                return new ActionResult.Failed(action, "You hit a wall.");
-            } else if (state.getEntity(new Position(position.x()+1, position.y())) instanceof Player) { // case 3: Player
-                return new ActionResult.Failed(action, "You hit another player.");
-            } else  { // case 4: Empty
-                state.move(new Position(position.x(), position.y()), new Position(position.x()+1, position.y()));
-                state.checkpoint();
-                return new ActionResult.Success(action);
-            }
+        } else if (action instanceof Move move) {
+            return switch (tryMove(move.getInitiator(), move.getDirection())) {
+                case MOVED, PUSHED -> new ActionResult.Success(action);
+                case PLAYER_NOT_FOUND -> new ActionResult.Failed(action, StringResources.PLAYER_NOT_FOUND);
+                case HIT_WALL -> new ActionResult.Failed(action, StringResources.HIT_WALL_MESSAGE);
+                case HIT_PLAYER -> new ActionResult.Failed(action, StringResources.HIT_PLAYER_MESSAGE);
+                case OTHERS_BOX -> new ActionResult.Failed(action, StringResources.OTHERS_BOX_MESSAGE);
+                case BOX_BLOCKED -> new ActionResult.Failed(action, StringResources.BOX_BLOCKED_MESSAGE);
+            };
         } else { // undo
             Optional<Integer> undoQuota = state.getUndoQuota();
             if (undoQuota.isPresent()) { // limited quota
@@ -177,4 +58,46 @@ public abstract class AbstractSokobanGame implements SokobanGame {
             }
         }
     }
+
+    /**
+     * Let a player try to move one step in a direction, pushing its box if there is one.
+     * Each cell next to the player is read at most once, and the state is only changed if the move succeeds.
+     *
+     * @param playerId  The id of the player.
+     * @param direction The direction to move.
+     * @return The outcome of the move.
+     */
+    private MoveOutcome tryMove(int playerId, Direction direction) {
+        final Position position = state.getPlayerPositionById(playerId);
+        if (position == null) { // does player exist?
+            return MoveOutcome.PLAYER_NOT_FOUND;
+        }
+        final int dx = direction.getDx();
+        final int dy = direction.getDy();
+        final Position next = Position.of(position.x() + dx, position.y() + dy);
+        final Entity nextEntity = state.getEntity(next);
+        if (nextEntity instanceof Box box) { // case 1: Box
+            if (box.getPlayerId() != playerId) { // does the box belongs to you?
+                return MoveOutcome.OTHERS_BOX;
+            }
+            // moveable only when there is empty
+            final Position beyond = Position.of(next.x() + dx, next.y() + dy);
+            if (!(state.getEntity(beyond) instanceof Empty)) {
+                return MoveOutcome.BOX_BLOCKED;
+            }
+            state.move(next, beyond);
+            state.move(position, next);
+            state.checkpoint();
+            state.checkDeadlockAt(beyond);
+            return MoveOutcome.PUSHED;
+        } else if (nextEntity instanceof Wall) { // case 2: Wall
+            return MoveOutcome.HIT_WALL;
+        } else if (nextEntity instanceof Player) { // case 3: Player
+            return MoveOutcome.HIT_PLAYER;
+        }
+        // case 4: Empty
+        state.move(position, next);
+        state.checkpoint();
+        return MoveOutcome.MOVED;
+    }
 }
@@ -0,0 +1,283 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.actions.Direction;
+import hk.ust.comp3021.entities.Entities;
+import hk.ust.comp3021.entities.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A bitboard representation of a game, meant for solvers and simulations.
+ * Every layer of the board is a bitset of {@code long} words, with bit {@code y * width + x} for each cell:
+ * <li>Walls and floor cells, which never change.</li>
+ * <li>Box destinations, which never change.</li>
+ * <li>The boxes of each player, and all boxes together.</li>
+ * <li>The players.</li>
+ * <p>
+ * Moves follow the same rules as {@link AbstractSokobanGame#processAction(hk.ust.comp3021.actions.Action)},
+ * while win checks, move legality and hashing are word-wide bit operations.
+ * Positions beyond the bounds of the map are treated as walls.
+ */
+public final class BitBoard {
+    private final int width;
+    private final int height;
+    private final long[] walls;
+    private final long[] floor;
+    private final long[] destinations;
+    /**
+     * The boxes of each player, null if the player has no boxes.
+     */
+    private final long[][] boxes;
+    private final long[] allBoxes;
+    private final long[] players;
+    /**
+     * The cell of each player, -1 if the player does not exist.
+     */
+    private final int[] playerCells;
+
+    /**
+     * Create a bitboard of the initial state of a game map.
+     *
+     * @param map the game map.
+     */
+    public BitBoard(@NotNull GameMap map) {
+        this(map, map.copyCells());
+    }
+
+    /**
+     * Create a bitboard of the current state of a running game.
+     *
+     * @param state the game state.
+     */
+    public BitBoard(@NotNull GameState state) {
+        this(state.getGameMap(), state.copyCells());
+    }
+
+    private BitBoard(GameMap map, byte[] cells) {
+        this.width = map.getMaxWidth();
+        this.height = map.getMaxHeight();
+        final int words = (cells.length + 63) >>> 6;
+        this.walls = new long[words];
+        this.floor = new long[words];
+        this.destinations = new long[words];
+        this.boxes = new long[Entities.MAX_PLAYERS][];
+        this.allBoxes = new long[words];
+        this.players = new long[words];
+        this.playerCells = new int[Entities.MAX_PLAYERS];
+        Arrays.fill(playerCells, -1);
+
+        final boolean[] destinationCells = map.getDestinationCells();
+        for (int i = 0; i < cells.length; i++) {
+            final byte cell = cells[i];
+            if (cell == Cell.WALL) {
+                set(walls, i);
+            } else if (cell != Cell.OUTSIDE) {
+                set(floor, i);
+            }
+            if (destinationCells[i]) {
+                set(destinations, i);
+            }
+            if (Cell.isPlayer(cell)) {
+                set(players, i);
+                playerCells[Cell.playerIdOf(cell)] = i;
+            } else if (Cell.isBox(cell)) {
+                final int owner = Cell.playerIdOf(cell);
+                if (boxes[owner] == null) {
+                    boxes[owner] = new long[words];
+                }
+                set(boxes[owner], i);
+                set(allBoxes, i);
+            }
+        }
+    }
+
+    private BitBoard(BitBoard other) {
+        this.width = other.width;
+        this.height = other.height;
+        // the static layers are never modified, so they can be shared
+        this.walls = other.walls;
+        this.floor = other.floor;
+        this.destinations = other.destinations;
+        this.boxes = new long[Entities.MAX_PLAYERS][];
+        for (int i = 0; i < Entities.MAX_PLAYERS; i++) {
+            if (other.boxes[i] != null) {
+                this.boxes[i] = other.boxes[i].clone();
+            }
+        }
+        this.allBoxes = other.allBoxes.clone();
+        this.players = other.players.clone();
+        this.playerCells = other.playerCells.clone();
+    }
+
+    /**
+     * @return an independent copy of this bitboard.
+     */
+    public @NotNull BitBoard copy() {
+        return new BitBoard(this);
+    }
+
+    /**
+     * Let a player try to move one step.
+     * The board is only changed if the outcome is successful.
+     *
+     * @param playerId  the id of the player.
+     * @param direction the direction to move.
+     * @return the outcome of the move.
+     */
+    public @NotNull MoveOutcome move(int playerId, @NotNull Direction direction) {
+        if (playerId < 0 || playerId >= Entities.MAX_PLAYERS || playerCells[playerId] < 0) {
+            return MoveOutcome.PLAYER_NOT_FOUND;
+        }
+        final int from = playerCells[playerId];
+        final int next = neighbor(from, direction);
+        if (next < 0) {
+            return MoveOutcome.HIT_WALL;
+        }
+        if (get(allBoxes, next)) {
+            if (boxes[playerId] == null || !get(boxes[playerId], next)) {
+                return MoveOutcome.OTHERS_BOX;
+            }
+            final int beyond = neighbor(next, direction);
+            if (beyond < 0 || !get(floor, beyond) || get(allBoxes, beyond) || get(players, beyond)) {
+                return MoveOutcome.BOX_BLOCKED;
+            }
+            clear(boxes[playerId], next);
+            clear(allBoxes, next);
+            set(boxes[playerId], beyond);
+            set(allBoxes, beyond);
+            movePlayer(playerId, from, next);
+            return MoveOutcome.PUSHED;
+        } else if (get(walls, next)) {
+            return MoveOutcome.HIT_WALL;
+        } else if (get(players, next)) {
+            return MoveOutcome.HIT_PLAYER;
+        }
+        movePlayer(playerId, from, next);
+        return MoveOutcome.MOVED;
+    }
+
+    private void movePlayer(int playerId, int from, int to) {
+        clear(players, from);
+        set(players, to);
+        playerCells[playerId] = to;
+    }
+
+    /**
+     * @return the cell next to the given one in the direction, or -1 if it is beyond the bounds of the map.
+     */
+    private int neighbor(int cell, Direction direction) {
+        final int x = cell % width + direction.getDx();
+        final int y = cell / width + direction.getDy();
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return -1;
+        }
+        return y * width + x;
+    }
+
+    /**
+     * Check whether the game wins, i.e., there is no box outside the box destinations.
+     *
+     * @return true if the game wins.
+     */
+    public boolean isWin() {
+        for (int i = 0; i < allBoxes.length; i++) {
+            if ((allBoxes[i] & ~destinations[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param id player id.
+     * @return the current position of the player, or null if there is no such player.
+     */
+    public @Nullable Position getPlayerPosition(int id) {
+        if (id < 0 || id >= Entities.MAX_PLAYERS || playerCells[id] < 0) {
+            return null;
+        }
+        return Position.of(playerCells[id] % width, playerCells[id] / width);
+    }
+
+    /**
+     * Get the entity that is currently at the given position, as {@link GameState#getEntity(Position)} does.
+     *
+     * @param position the position of the entity.
+     * @return the entity object, or null if the position is outside the map.
+     */
+    public @Nullable Entity getEntity(@NotNull Position position) {
+        final int cell = position.y() * width + position.x();
+        if (get(players, cell)) {
+            for (int id = 0; id < Entities.MAX_PLAYERS; id++) {
+                if (playerCells[id] == cell) {
+                    return Entities.player(id);
+                }
+            }
+        } else if (get(allBoxes, cell)) {
+            for (int id = 0; id < Entities.MAX_PLAYERS; id++) {
+                if (boxes[id] != null && get(boxes[id], cell)) {
+                    return Entities.box(id);
+                }
+            }
+        } else if (get(walls, cell)) {
+            return Entities.wall();
+        } else if (get(floor, cell)) {
+            return Entities.empty();
+        }
+        return null;
+    }
+
+    /**
+     * A 64-bit hash of the placement of boxes and players.
+     * Two bitboards of the same map with the same placement always have the same hash.
+     *
+     * @return the hash.
+     */
+    public long stateHash() {
+        long hash = 0;
+        for (int id = 0; id < Entities.MAX_PLAYERS; id++) {
+            if (boxes[id] != null) {
+                hash = mix(hash, boxes[id]);
+            }
+        }
+        return mix(hash, players);
+    }
+
+    private static long mix(long hash, long[] words) {
+        for (long word : words) {
+            hash = Long.rotateLeft(hash ^ word, 29) * 0x9E3779B97F4A7C15L;
+        }
+        return hash;
+    }
+
+    /**
+     * Two bitboards are equal if they have the same placement of boxes and players.
+     * They are assumed to be created from the same map.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BitBoard other)) {
+            return false;
+        }
+        return Arrays.equals(players, other.players) && Arrays.deepEquals(boxes, other.boxes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(stateHash());
+    }
+
+    private static boolean get(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private static void set(long[] bits, int cell) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    private static void clear(long[] bits, int cell) {
+        bits[cell >>> 6] &= ~(1L << cell);
+    }
+}
@@ -0,0 +1,110 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The one-byte encoding of the entity in a cell of a board.
+ * Boards are stored as flat {@code byte[]} indexed by {@code y * width + x},
+ * and decoded back to the shared instances in {@link Entities} when needed.
+ */
+final class Cell {
+    /**
+     * A cell outside the map, e.g., beyond the end of a short line in a non-rectangular map.
+     */
+    static final byte OUTSIDE = 0;
+    static final byte EMPTY = 1;
+    static final byte WALL = 2;
+    private static final byte FIRST_PLAYER = 3;
+    private static final byte FIRST_BOX = FIRST_PLAYER + Entities.MAX_PLAYERS;
+
+    private Cell() {
+    }
+
+    /**
+     * @param id id of the player.
+     * @return the code of the player.
+     */
+    static byte player(int id) {
+        return (byte) (FIRST_PLAYER + id);
+    }
+
+    /**
+     * @param playerId the id of the player that can move the box.
+     * @return the code of the box.
+     */
+    static byte box(int playerId) {
+        return (byte) (FIRST_BOX + playerId);
+    }
+
+    static boolean isPlayer(byte cell) {
+        return cell >= FIRST_PLAYER && cell < FIRST_BOX;
+    }
+
+    static boolean isBox(byte cell) {
+        return cell >= FIRST_BOX;
+    }
+
+    /**
+     * @param cell the code of a player or a box.
+     * @return the id of the player, or the player owning the box.
+     */
+    static int playerIdOf(byte cell) {
+        return isBox(cell) ? cell - FIRST_BOX : cell - FIRST_PLAYER;
+    }
+
+    /**
+     * @param entity the entity, or null for a cell outside the map.
+     * @return the code of the entity.
+     */
+    static byte of(@Nullable Entity entity) {
+        return switch (entity) {
+            case Empty ignored -> EMPTY;
+            case Wall ignored -> WALL;
+            case Player p -> player(checkId(p.getId()));
+            case Box b -> box(checkId(b.getPlayerId()));
+            case null -> OUTSIDE;
+        };
+    }
+
+    private static int checkId(int id) {
+        if (id < 0 || id >= Entities.MAX_PLAYERS) {
+            throw new IllegalArgumentException("Invalid player id: " + id);
+        }
+        return id;
+    }
+
+    /**
+     * @param cell the code of an entity.
+     * @return the shared entity instance, or null for a cell outside the map.
+     */
+    static @Nullable Entity toEntity(byte cell) {
+        if (cell == OUTSIDE) {
+            return null;
+        } else if (cell == EMPTY) {
+            return Entities.empty();
+        } else if (cell == WALL) {
+            return Entities.wall();
+        } else if (isPlayer(cell)) {
+            return Entities.player(cell - FIRST_PLAYER);
+        } else {
+            return Entities.box(cell - FIRST_BOX);
+        }
+    }
+
+    /**
+     * The Zobrist key of a player or a box standing on a cell.
+     * A table of random keys for every cell and code would take gigabytes on the largest maps,
+     * so the key is derived from the cell index and the code by the SplitMix64 mixing function instead.
+     *
+     * @param index the index of the cell, i.e., {@code y * width + x}.
+     * @param cell  the code of a player or a box.
+     * @return the key.
+     */
+    static long zobristKey(int index, byte cell) {
+        long z = (((long) index << 8) | (cell & 0xFF)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
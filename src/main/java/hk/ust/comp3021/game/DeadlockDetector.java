@@ -0,0 +1,184 @@
+package hk.ust.comp3021.game;
+
+import java.util.Arrays;
+
+/**
+ * Detects boxes that can never be pushed onto a box destination again, looking only at the neighborhood of a box.
+ * <p>
+ * A box is deadlocked if
+ * <li>it stands on a dead square of the map, see {@link GameMap#isDeadSquare(Position)},</li>
+ * <li>it is part of a 2x2 square made of walls and boxes with at least one box not on a destination, or</li>
+ * <li>it is frozen, i.e., it can be moved neither horizontally nor vertically, together with other frozen boxes
+ * blocking it, and one of these boxes is not on a destination.</li>
+ * <p>
+ * A box cannot move along an axis if there is a wall on either side, if both sides are dead squares,
+ * or if a box on either side is frozen itself. While checking whether a neighbor is frozen,
+ * the boxes whose check led to it are treated as walls, so mutually blocking boxes are found without looping.
+ * Players are never obstacles, since they can walk away.
+ */
+final class DeadlockDetector {
+    /**
+     * The maximum number of boxes looked at by one freeze check, so that a check stays cheap on crowded boards.
+     * When it is exceeded, the box is conservatively assumed not frozen.
+     */
+    private static final int MAX_CHECKS = 256;
+
+    private final GameMap map;
+    private final byte[] cells;
+    private final boolean[] destinationCells;
+    private final int width;
+    private final int height;
+    /**
+     * The dead squares of the map, fetched on first use.
+     */
+    private long[] deadSquares = null;
+    private int remainingChecks = 0;
+    /**
+     * The boxes on the path of the current freeze check, from the first box to the box being checked.
+     */
+    private int[] group = new int[8];
+    private int groupSize = 0;
+    /**
+     * The boxes of the current freeze check found to be frozen.
+     */
+    private int[] frozen = new int[8];
+    private int frozenSize = 0;
+
+    /**
+     * @param map              the game map.
+     * @param cells            the live board of a game state, read but never modified.
+     * @param destinationCells whether each cell is a box destination.
+     */
+    DeadlockDetector(GameMap map, byte[] cells, boolean[] destinationCells) {
+        this.map = map;
+        this.cells = cells;
+        this.destinationCells = destinationCells;
+        this.width = map.getMaxWidth();
+        this.height = map.getMaxHeight();
+    }
+
+    /**
+     * @param index the cell of a box.
+     * @return true if the box can never reach a destination again.
+     */
+    boolean isDeadlocked(int index) {
+        if (isDeadSquare(index)) {
+            return true;
+        }
+        if (isBlockDeadlocked(index)) {
+            return true;
+        }
+        groupSize = 0;
+        frozenSize = 0;
+        remainingChecks = MAX_CHECKS;
+        if (isFrozen(index)) {
+            for (int i = 0; i < frozenSize; i++) {
+                if (!destinationCells[frozen[i]]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the four 2x2 squares containing the box.
+     */
+    private boolean isBlockDeadlocked(int index) {
+        final int x = index % width;
+        final int y = index / width;
+        for (int left = x - 1; left <= x; left++) {
+            for (int top = y - 1; top <= y; top++) {
+                boolean blocked = true;
+                boolean offDestination = false;
+                for (int i = 0; i < 4 && blocked; i++) {
+                    final int cx = left + (i & 1);
+                    final int cy = top + (i >> 1);
+                    if (isWall(cx, cy)) {
+                        continue;
+                    }
+                    final int cell = cy * width + cx;
+                    if (Cell.isBox(cells[cell])) {
+                        offDestination |= !destinationCells[cell];
+                    } else {
+                        blocked = false;
+                    }
+                }
+                if (blocked && offDestination) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isFrozen(int index) {
+        if (--remainingChecks < 0) {
+            return false;
+        }
+        group = push(group, groupSize++, index);
+        final int frozenBefore = frozenSize;
+        final int x = index % width;
+        final int y = index / width;
+        final boolean frozenHere = isBlocked(x, y, 1, 0) && isBlocked(x, y, 0, 1);
+        groupSize--;
+        if (frozenHere) {
+            frozen = push(frozen, frozenSize++, index);
+        } else { // the boxes found frozen on the way may rely on this one standing still
+            frozenSize = frozenBefore;
+        }
+        return frozenHere;
+    }
+
+    /**
+     * @return true if the box at (x, y) cannot be moved along the axis (dx, dy).
+     */
+    private boolean isBlocked(int x, int y, int dx, int dy) {
+        final int ax = x - dx;
+        final int ay = y - dy;
+        final int bx = x + dx;
+        final int by = y + dy;
+        if (isWall(ax, ay) || isWall(bx, by)) {
+            return true;
+        }
+        final int a = ay * width + ax;
+        final int b = by * width + bx;
+        if (isDeadSquare(a) && isDeadSquare(b)) {
+            return true;
+        }
+        return isFrozenNeighbor(a) || isFrozenNeighbor(b);
+    }
+
+    private boolean isFrozenNeighbor(int index) {
+        if (!Cell.isBox(cells[index])) {
+            return false;
+        }
+        for (int i = 0; i < groupSize; i++) {
+            if (group[i] == index) { // already being checked, so it stands still like a wall
+                return true;
+            }
+        }
+        return isFrozen(index);
+    }
+
+    private boolean isWall(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return true;
+        }
+        final byte cell = cells[y * width + x];
+        return cell == Cell.WALL || cell == Cell.OUTSIDE;
+    }
+
+    private boolean isDeadSquare(int index) {
+        if (deadSquares == null) {
+            deadSquares = map.getDeadSquareWords();
+        }
+        return (deadSquares[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int[] push(int[] array, int size, int value) {
+        final int[] result = (size == array.length) ? Arrays.copyOf(array, size * 2) : array;
+        result[size] = value;
+        return result;
+    }
+}
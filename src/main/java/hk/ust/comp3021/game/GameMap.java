@@ -1,5 +1,6 @@
 package hk.ust.comp3021.game;
 
+import hk.ust.comp3021.actions.Direction;
 import hk.ust.comp3021.entities.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -18,16 +19,36 @@ import java.util.*;
  * GameBoard is capable to create many GameState instances, each representing an ongoing game.
  */
 public class GameMap {
-    private int maxWidth;
-    private int maxHeight;
-    private Set<Position> walls;
-    private Set<Position> destinations;
-    private Map<Position, Character> boxLocations;
-    private Map<Character, Position> playerLocations;
-    private Optional<Integer> undoLimit;
-    private static Set<Integer> playerIDs = new HashSet<Integer>();
-    static Entity[][] entityArray;
-    private static String[] mapTextSplited = null;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final Set<Position> destinations;
+    private final Optional<Integer> undoLimit;
+    private final Set<Integer> playerIDs = new HashSet<>();
+    /**
+     * The initial layout of this map, one {@link Cell} code per cell indexed by {@code y * maxWidth + x}.
+     * It is allocated on the first {@link GameMap#putEntity(Position, Entity)} so that maps with huge dimensions
+     * can still be created, and it is never modified by any {@link GameState}.
+     */
+    private byte[] cells = null;
+    /**
+     * Whether each cell is a box destination, built on first use and shared by all game states.
+     */
+    private volatile boolean[] destinationCells = null;
+    /**
+     * The dead squares of this map as a bitset of {@code long} words, built on first use and shared by all game states.
+     * It is dropped whenever the layout changes.
+     */
+    private volatile long[] deadSquares = null;
+    /**
+     * The push distances from every floor cell to every destination, built on first use and shared by all game states.
+     * It is dropped whenever the layout changes.
+     */
+    private volatile PushDistances pushDistances = null;
+    /**
+     * The goal rooms of this map, found on first use and shared by all game states.
+     * It is dropped whenever the layout changes.
+     */
+    private volatile List<GoalRoom> goalRooms = null;
 
 
     /**
@@ -42,41 +63,7 @@ public class GameMap {
      *                     -1 means unlimited. Other negative numbers are not allowed.
      */
     public GameMap(int maxWidth, int maxHeight, Set<Position> destinations, int undoLimit) {
-        this.maxWidth = maxWidth;
-        this.maxHeight = maxHeight;
-        this.destinations = destinations;
-        this.undoLimit = Optional.ofNullable(undoLimit);
-        this.walls = new HashSet<Position>();
-        this.boxLocations = new HashMap<>();
-        this.playerLocations = new HashMap<>();
-
-        // put all the entities into the array
-        entityArray = new Entity[maxHeight][maxWidth];
-        for (int i = 0; i < maxHeight; i++) { // set all to null first since the map may be non-rectangle
-            for (int j = 0; j < maxWidth; j++) {
-                entityArray[i][j] = null;
-            }
-        }
-
-        if (mapTextSplited != null) { // if directly call ctor -> no text provided
-            for (int i = 0; i < maxHeight; i++) {
-                for (int j = 0; j < mapTextSplited[i + 1].length(); j++) {
-                    char temp = mapTextSplited[i + 1].charAt(j); // get the character
-                    if ((temp >= 'A') && (temp <= 'Z')) { // finding player entity
-                        playerLocations.put(temp, new Position(j, i));
-                        putEntity(new Position(j, i), new Player(temp - 65));
-                    } else if ((temp >= 'a') && (temp <= 'z')) { // finding box entity
-                        boxLocations.put(new Position(j, i), temp);
-                        putEntity(new Position(j, i), new Box(temp - 97));
-                    } else if (temp == '#') { // finding wall entity
-                        walls.add(new Position(j, i));
-                        putEntity(new Position(j, i), new Wall());
-                    } else if ((temp == '.') || (temp == '@')) { // finding empty entity
-                        putEntity(new Position(j, i), new Empty());
-                    }
-                }
-            }
-        }
+        this(maxWidth, maxHeight, destinations, Optional.of(undoLimit));
     }
 
     public GameMap(int maxWidth, int maxHeight, Set<Position> destinations, Optional<Integer> undoLimit) {
@@ -84,37 +71,6 @@ public class GameMap {
         this.maxHeight = maxHeight;
         this.destinations = destinations;
         this.undoLimit = undoLimit;
-        this.walls = new HashSet<Position>();
-        this.boxLocations = new HashMap<>();
-        this.playerLocations = new HashMap<>();
-
-        // put all the entities into the array
-        entityArray = new Entity[maxHeight][maxWidth];
-        for (int i = 0; i < maxHeight; i++) { // set all to null first since the map may be non-rectangle
-            for (int j = 0; j < maxWidth; j++) {
-                entityArray[i][j] = null;
-            }
-        }
-
-        if (mapTextSplited != null) { // if directly call ctor -> no text provided
-            for (int i = 0; i < maxHeight; i++) {
-                for (int j = 0; j < mapTextSplited[i + 1].length(); j++) {
-                    char temp = mapTextSplited[i + 1].charAt(j); // get the character
-                    if ((temp >= 'A') && (temp <= 'Z')) { // finding player entity
-                        playerLocations.put(temp, new Position(j, i));
-                        putEntity(new Position(j, i), new Player(temp - 65));
-                    } else if ((temp >= 'a') && (temp <= 'z')) { // finding box entity
-                        boxLocations.put(new Position(j, i), temp);
-                        putEntity(new Position(j, i), new Box(temp - 97));
-                    } else if (temp == '#') { // finding wall entity
-                        walls.add(new Position(j, i));
-                        putEntity(new Position(j, i), new Wall());
-                    } else if ((temp == '.') || (temp == '@')) { // finding empty entity
-                        putEntity(new Position(j, i), new Empty());
-                    }
-                }
-            }
-        }
     }
 
     /**
@@ -153,7 +109,7 @@ public class GameMap {
      *                                  or if there are players that have no corresponding boxes.
      */
     public static GameMap parse(String mapText) {
-        mapTextSplited = mapText.split("\n"); // split the text line by line
+        final String[] mapTextSplited = mapText.split("\n"); // split the text line by line
 
         int undoLimit = Integer.parseInt(mapTextSplited[0]); // first line contains undoLimit (str -> int)
         if (undoLimit < -1) { // invalid undoLimit
@@ -184,13 +140,12 @@ public class GameMap {
                 if ((temp >= 'A') && (temp <= 'Z')) { // finding players
                     int tempIndex = temp - 65;
                     playerList[tempIndex] += 1; // add 1 to the corresponding box
-                    playerIDs.add(tempIndex); // add the playerID to the set
                 } else if ((temp >= 'a') && (temp <= 'z')) { // finding boxes
                     int tempIndex = temp - 97;
                     boxList[tempIndex] += 1; // add 1 to the corresponding box
                 } else if (temp == '@') { // finding destinations
                     numOfdestinations += 1; // add 1 to the variable
-                    destinations.add(new Position(j, i-1));
+                    destinations.add(Position.of(j, i-1));
                 }
             }
             if (tempWidth > maxWidth) { // update maxWeight if needed
@@ -229,7 +184,22 @@ public class GameMap {
         }
 
         // after checking, all ok
-        return new GameMap(maxWidth, maxHeight, destinations, Optional.ofNullable(undoLimit));
+        final GameMap gameMap = new GameMap(maxWidth, maxHeight, destinations, Optional.of(undoLimit));
+        for (int i = 0; i < maxHeight; i++) {
+            for (int j = 0; j < mapTextSplited[i + 1].length(); j++) {
+                char temp = mapTextSplited[i + 1].charAt(j); // get the character
+                if ((temp >= 'A') && (temp <= 'Z')) { // finding player entity
+                    gameMap.putEntity(Position.of(j, i), Entities.player(temp - 65));
+                } else if ((temp >= 'a') && (temp <= 'z')) { // finding box entity
+                    gameMap.putEntity(Position.of(j, i), Entities.box(temp - 97));
+                } else if (temp == '#') { // finding wall entity
+                    gameMap.putEntity(Position.of(j, i), Entities.wall());
+                } else if ((temp == '.') || (temp == '@')) { // finding empty entity
+                    gameMap.putEntity(Position.of(j, i), Entities.empty());
+                }
+            }
+        }
+        return gameMap;
 
     }
 
@@ -241,7 +211,10 @@ public class GameMap {
      */
     @Nullable
     public Entity getEntity(Position position) {
-        return entityArray[position.y()][position.x()];
+        if (cells == null) { // nothing has been put into the map yet
+            return null;
+        }
+        return Cell.toEntity(cells[indexOf(position)]);
     }
 
     /**
@@ -251,7 +224,220 @@ public class GameMap {
      * @param entity   the entity to put into game map.
      */
     public void putEntity(Position position, Entity entity) {
-        entityArray[position.y()][position.x()] = entity;
+        if (cells == null) { // all cells are outside the map at first since the map may be non-rectangle
+            cells = new byte[cellCount()];
+        }
+        cells[indexOf(position)] = Cell.of(entity);
+        if (deadSquares != null) {
+            deadSquares = null;
+        }
+        if (pushDistances != null) {
+            pushDistances = null;
+        }
+        if (goalRooms != null) {
+            goalRooms = null;
+        }
+        if (entity instanceof Player) {
+            playerIDs.add(((Player) entity).getId());
+        }
+    }
+
+    /**
+     * Create a copy of the initial layout of this map, which can be freely modified by a {@link GameState}.
+     *
+     * @return a new array of {@link Cell} codes indexed by {@code y * maxWidth + x}.
+     */
+    byte[] copyCells() {
+        return (cells == null) ? new byte[cellCount()] : cells.clone();
+    }
+
+    /**
+     * @return whether each cell, indexed by {@code y * maxWidth + x}, is a box destination.
+     * The array is shared and must not be modified.
+     */
+    boolean[] getDestinationCells() {
+        boolean[] result = destinationCells;
+        if (result == null) {
+            result = new boolean[cellCount()];
+            for (Position destination : destinations) {
+                result[indexOf(destination)] = true;
+            }
+            destinationCells = result;
+        }
+        return result;
+    }
+
+    /**
+     * Check whether a box on the given position can never be pushed onto any box destination,
+     * e.g., a corner or a stretch along a wall without destinations, so that pushing a box there loses the game.
+     * Only walls are taken into account: players and boxes may block a box further, but never free it.
+     *
+     * @param position a position in the map.
+     * @return true if the position is a floor cell from which no box destination can be reached.
+     * @throws IndexOutOfBoundsException if the position is outside the map.
+     */
+    public boolean isDeadSquare(@NotNull Position position) {
+        final int index = indexOf(position);
+        return (getDeadSquareWords()[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Get the dead squares of the map, see {@link GameMap#isDeadSquare(Position)}.
+     *
+     * @return a new bitset where bit {@code y * maxWidth + x} is set if the cell is a dead square.
+     */
+    public @NotNull BitSet getDeadSquares() {
+        return BitSet.valueOf(getDeadSquareWords());
+    }
+
+    /**
+     * @return the dead squares as {@code long} words, shared and must not be modified.
+     */
+    long[] getDeadSquareWords() {
+        long[] result = deadSquares;
+        if (result == null) {
+            result = computeDeadSquares();
+            deadSquares = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the minimum number of pushes needed to move a box from each floor cell onto each box destination.
+     * The table takes one breadth-first search per destination to build, i.e., time and {@code char} storage
+     * proportional to the number of destinations times the number of floor cells,
+     * so it is only built when first asked for and then shared by all callers.
+     *
+     * @return the push distances of the current layout.
+     */
+    public @NotNull PushDistances getPushDistances() {
+        PushDistances result = pushDistances;
+        if (result == null) {
+            result = new PushDistances(maxWidth, maxHeight, (cells == null) ? new byte[cellCount()] : cells, destinations);
+            pushDistances = result;
+        }
+        return result;
+    }
+
+    /**
+     * Check whether a position is a tunnel cell along a direction, i.e., a floor cell with walls on both sides
+     * across the direction. A box pushed along a tunnel can only go on or back, so the solver pushes a box through
+     * a tunnel in one go.
+     *
+     * @param position  a position in the map.
+     * @param direction the direction of a push.
+     * @return true if the position is a floor cell whose neighbors across the direction are walls.
+     * @throws IndexOutOfBoundsException if the position is outside the map.
+     */
+    public boolean isTunnel(@NotNull Position position, @NotNull Direction direction) {
+        indexOf(position); // throws if the position is outside the map
+        if (!isFloor(position.x(), position.y())) {
+            return false;
+        }
+        // swapping the components of the direction turns it a quarter, i.e., across the direction
+        final int acrossX = direction.getDy();
+        final int acrossY = direction.getDx();
+        return !isFloor(position.x() + acrossX, position.y() + acrossY)
+                && !isFloor(position.x() - acrossX, position.y() - acrossY);
+    }
+
+    /**
+     * Get the goal rooms of the map, i.e., areas holding destinations that can only be entered through one door,
+     * each with an order to fill its destinations in and the pushes to do so, see {@link GoalRoom}.
+     * Only walls and destinations are taken into account, so the rooms are shared by all game states.
+     * Rooms larger than a fixed number of cells are not looked for, since searching their fill order would
+     * cost more than it saves.
+     *
+     * @return the goal rooms of the current layout, ordered by entrance in row-major order.
+     */
+    public @NotNull @Unmodifiable List<GoalRoom> getGoalRooms() {
+        List<GoalRoom> result = goalRooms;
+        if (result == null) {
+            result = GoalRooms.find(maxWidth, maxHeight, (cells == null) ? new byte[cellCount()] : cells,
+                    getDestinationCells());
+            goalRooms = result;
+        }
+        return result;
+    }
+
+    /**
+     * Find all floor cells from which a box can be pushed onto a destination, by a breadth-first search backwards
+     * from all destinations at once: a box can get to a cell from the previous cell in a direction if a player
+     * can stand one cell further back. The remaining floor cells are dead.
+     * Each cell is visited at most once, so this takes linear time in the area of the map.
+     */
+    private long[] computeDeadSquares() {
+        final int count = cellCount();
+        final long[] alive = new long[(count + 63) >>> 6];
+        final int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        if (cells != null) {
+            for (Position destination : destinations) {
+                final boolean inside = destination.x() >= 0 && destination.x() < maxWidth
+                        && destination.y() >= 0 && destination.y() < maxHeight;
+                if (inside && isFloor(destination.x(), destination.y())) {
+                    final int index = destination.y() * maxWidth + destination.x();
+                    if ((alive[index >>> 6] & (1L << index)) == 0) {
+                        alive[index >>> 6] |= 1L << index;
+                        queue[tail++] = index;
+                    }
+                }
+            }
+        }
+        final int[][] directions = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
+        while (head < tail) {
+            final int index = queue[head++];
+            final int x = index % maxWidth;
+            final int y = index / maxWidth;
+            for (int[] direction : directions) {
+                // the box came from (x - dx, y - dy), pushed by a player at (x - 2dx, y - 2dy)
+                final int fromX = x - direction[0];
+                final int fromY = y - direction[1];
+                final int from = fromY * maxWidth + fromX;
+                if (isFloor(fromX, fromY) && isFloor(fromX - direction[0], fromY - direction[1])
+                        && (alive[from >>> 6] & (1L << from)) == 0) {
+                    alive[from >>> 6] |= 1L << from;
+                    queue[tail++] = from;
+                }
+            }
+        }
+        final long[] dead = new long[alive.length];
+        if (cells != null) {
+            for (int index = 0; index < count; index++) {
+                if (cells[index] != Cell.WALL && cells[index] != Cell.OUTSIDE && (alive[index >>> 6] & (1L << index)) == 0) {
+                    dead[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        return dead;
+    }
+
+    private boolean isFloor(int x, int y) {
+        if (x < 0 || x >= maxWidth || y < 0 || y >= maxHeight) {
+            return false;
+        }
+        final byte cell = cells[y * maxWidth + x];
+        return cell != Cell.WALL && cell != Cell.OUTSIDE;
+    }
+
+    /**
+     * @param position a position in the map.
+     * @return the index of the position in flat arrays, i.e., {@code y * maxWidth + x}.
+     * @throws IndexOutOfBoundsException if the position is outside the map.
+     */
+    int indexOf(Position position) {
+        Objects.checkIndex(position.x(), maxWidth);
+        Objects.checkIndex(position.y(), maxHeight);
+        return position.y() * maxWidth + position.x();
+    }
+
+    private int cellCount() {
+        final long count = (long) maxWidth * maxHeight;
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("The map is too large: " + maxWidth + "x" + maxHeight);
+        }
+        return (int) count;
     }
 
     /**
@@ -277,8 +463,8 @@ public class GameMap {
      *
      * @return a set of player id.
      */
-    public Set<Integer> getPlayerIds() {
-        return playerIDs;
+    public @NotNull @Unmodifiable Set<Integer> getPlayerIds() {
+        return Collections.unmodifiableSet(playerIDs);
     }
 
     /**
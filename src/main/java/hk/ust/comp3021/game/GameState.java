@@ -1,5 +1,6 @@
 package hk.ust.comp3021.game;
 
+import hk.ust.comp3021.actions.Direction;
 import hk.ust.comp3021.entities.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -21,10 +22,51 @@ import java.util.*;
  * <li>Undo quota left.</li>
  */
 public class GameState {
-    private GameMap gameMap;
-    private Map<Position, Character> currentBoxLocations;
-    private Map<Character, Position> currentPlayerLocations;
-    private Stack<Entity[][]> moveHistoryOfEntity;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    /**
+     * The bits of a move in direction UP in the mask of {@link GameState#legalMoves(int)},
+     * shifted left by the ordinal for the other directions.
+     */
+    private static final int MOVE_BIT = 1;
+    private static final int PUSH_BIT = 1 << 4;
+
+    private final GameMap gameMap;
+    private final int width;
+    /**
+     * The board of this game, one {@link Cell} code per cell indexed by {@code y * width + x}.
+     * It is copied from the game map so that each game state can be played independently.
+     */
+    private final byte[] cells;
+    /**
+     * Whether each cell is a box destination, shared with the game map.
+     */
+    private final boolean[] destinationCells;
+    /**
+     * The number of boxes not on a box destination, kept up to date by every change of the board.
+     */
+    private int boxesOutsideDestinations = 0;
+    /**
+     * The exclusive or of the Zobrist keys of all players and boxes on the board,
+     * kept up to date by every change of the board.
+     */
+    private long stateHash = 0;
+    /**
+     * The cell of each player indexed by player id, -1 if there is no such player.
+     */
+    private final int[] playerCells = new int[Entities.MAX_PLAYERS];
+    /**
+     * The cells of the boxes of each player indexed by player id, in no particular order.
+     * Only the first {@code boxCounts[id]} entries of each list are used.
+     */
+    private final int[][] boxCells = new int[Entities.MAX_PLAYERS][];
+    private final int[] boxCounts = new int[Entities.MAX_PLAYERS];
+    private final UndoLog undoLog;
+    private final DeadlockDetector deadlockDetector;
+    private final PlayerReachability reachability;
+    /**
+     * Whether a box has been pushed into a deadlock, which only an undo can get out of.
+     */
+    private boolean deadlocked = false;
     private int undoQuota;
     private boolean exitCondition;
 
@@ -36,29 +78,39 @@ public class GameState {
      */
     public GameState(@NotNull GameMap map) {
         this.gameMap = map;
-        this.currentBoxLocations = new HashMap<>();
-        this.currentPlayerLocations = new HashMap<>();
-        this.moveHistoryOfEntity = new Stack<>();
+        this.width = map.getMaxWidth();
+        this.cells = map.copyCells();
+        this.destinationCells = map.getDestinationCells();
         if (map.getUndoLimit().isEmpty()) {
             this.undoQuota = -1;
         } else {
             this.undoQuota = map.getUndoLimit().get();
         }
+        this.undoLog = new UndoLog(undoQuota);
+        this.deadlockDetector = new DeadlockDetector(map, cells, destinationCells);
+        this.reachability = new PlayerReachability(cells, width, map.getMaxHeight());
         this.exitCondition = false;
 
 
         // all the current locations come from GameMap at first
-        for (int i = 0; i < getMapMaxHeight(); i++) {
-            for (int j = 0; j < getMapMaxWidth(); j++)  {
-                Entity entity = map.getEntity(new Position(j, i));
-                if (entity instanceof Box) {
-                    currentBoxLocations.put(new Position(j, i), (char)(((Box)entity).getPlayerId()+97));
-                } else if (entity instanceof Player) {
-                    currentPlayerLocations.put((char)(((Player)entity).getId()+65), new Position(j, i));
-                }
+        Arrays.fill(playerCells, -1);
+        for (int i = 0; i < cells.length; i++) {
+            if (Cell.isBox(cells[i])) {
+                boxCounts[Cell.playerIdOf(cells[i])]++;
+            }
+        }
+        for (int id = 0; id < Entities.MAX_PLAYERS; id++) {
+            // one extra slot, since a moving box is added to its new cell before it is removed from the old one
+            boxCells[id] = new int[boxCounts[id] + 1];
+            boxCounts[id] = 0;
+        }
+        for (int i = 0; i < cells.length; i++) {
+            if (Cell.isBox(cells[i]) || Cell.isPlayer(cells[i])) {
+                final byte cell = cells[i];
+                cells[i] = Cell.OUTSIDE;
+                setCell(i, cell);
             }
         }
-        checkpoint(); // record the init state
     }
 
     /**
@@ -68,11 +120,114 @@ public class GameState {
      * @return the current position of the player.
      */
     public @Nullable Position getPlayerPositionById(int id) {
-        Character key = (char)(id+65);
-        if (currentPlayerLocations.containsKey(key)) {
-            return currentPlayerLocations.get(key);
+        final int cell = getPlayerCell(id);
+        if (cell < 0) {
+            return null;
+        }
+        return Position.of(cell % width, cell / width);
+    }
+
+    /**
+     * Get the current cell of the player with the given id, without allocating.
+     *
+     * @param id player id.
+     * @return the index of the cell, i.e., {@code y * width + x}, or -1 if there is no such player.
+     */
+    int getPlayerCell(int id) {
+        if (id < 0 || id >= Entities.MAX_PLAYERS) {
+            return -1;
+        }
+        return playerCells[id];
+    }
+
+    /**
+     * Get current positions of all boxes of the player with the given id.
+     *
+     * @param id player id.
+     * @return a list of positions of the boxes, in no particular order.
+     */
+    public @NotNull @Unmodifiable List<Position> getBoxPositionsById(int id) {
+        final List<Position> positions = new ArrayList<>(getBoxCount(id));
+        for (int i = 0; i < getBoxCount(id); i++) {
+            positions.add(Position.of(boxCells[id][i] % width, boxCells[id][i] / width));
+        }
+        return Collections.unmodifiableList(positions);
+    }
+
+    /**
+     * @param id player id.
+     * @return the number of boxes of the player.
+     */
+    int getBoxCount(int id) {
+        if (id < 0 || id >= Entities.MAX_PLAYERS) {
+            return 0;
+        }
+        return boxCounts[id];
+    }
+
+    /**
+     * @param id    player id.
+     * @param index the index of the box in [0, {@link GameState#getBoxCount(int)}).
+     * @return the cell of the box, i.e., {@code y * width + x}.
+     */
+    int getBoxCell(int id, int index) {
+        return boxCells[id][index];
+    }
+
+    /**
+     * Get the cells the player with the given id can walk to without pushing any box, including its own cell.
+     * The region is cached and only filled again after a box or another player moves.
+     *
+     * @param id player id.
+     * @return a new bitset where bit {@code y * width + x} is set if the player can reach the cell,
+     * empty if there is no such player.
+     */
+    public @NotNull BitSet getReachableRegion(int id) {
+        final int start = getPlayerCell(id);
+        if (start < 0) {
+            return new BitSet();
+        }
+        return BitSet.valueOf(reachability.regionWords(id, start));
+    }
+
+    /**
+     * Check whether the player with the given id can walk to the given position without pushing any box.
+     * Apart from refilling an outdated region, this takes constant time and does not allocate.
+     *
+     * @param id       player id.
+     * @param position the position to walk to.
+     * @return true if the position is reachable, false if it is not or there is no such player.
+     */
+    public boolean isReachable(int id, @NotNull Position position) {
+        final int start = getPlayerCell(id);
+        return start >= 0 && reachability.isReachable(id, start, gameMap.indexOf(position));
+    }
+
+    /**
+     * Get the normalized position of the player with the given id, i.e., the topmost and then leftmost position
+     * the player can walk to without pushing any box.
+     * Two states with the same boxes and the player in the same region have the same normalized position,
+     * so together with the boxes it identifies the state up to walking.
+     *
+     * @param id player id.
+     * @return the normalized position, or null if there is no such player.
+     */
+    public @Nullable Position getNormalizedPlayerPosition(int id) {
+        final int cell = getNormalizedPlayerCell(id);
+        if (cell < 0) {
+            return null;
         }
-        return null;
+        return Position.of(cell % width, cell / width);
+    }
+
+    /**
+     * @param id player id.
+     * @return the cell of the normalized position of the player, i.e., {@code y * width + x},
+     * or -1 if there is no such player.
+     */
+    int getNormalizedPlayerCell(int id) {
+        final int start = getPlayerCell(id);
+        return (start < 0) ? -1 : reachability.normalizedCell(id, start);
     }
 
     /**
@@ -82,10 +237,9 @@ public class GameState {
      */
     public @NotNull Set<Position> getAllPlayerPositions() {
         Set<Position> allPositions = new HashSet<>();
-        for (int i = 0; i < 26; i++) {
-            Character key = (char)(i+65);
-            if (currentPlayerLocations.containsKey(key)) {
-                allPositions.add(currentPlayerLocations.get(key));
+        for (int id = 0; id < Entities.MAX_PLAYERS; id++) {
+            if (playerCells[id] >= 0) {
+                allPositions.add(Position.of(playerCells[id] % width, playerCells[id] / width));
             }
         }
         return allPositions;
@@ -98,7 +252,7 @@ public class GameState {
      * @return the entity object.
      */
     public @Nullable Entity getEntity(@NotNull Position position) {
-        return gameMap.entityArray[position.y()][position.x()];
+        return Cell.toEntity(cells[gameMap.indexOf(position)]);
     }
 
     /**
@@ -129,21 +283,164 @@ public class GameState {
     /**
      * Check whether the game wins or not.
      * The game wins only when all box destinations have been occupied by boxes.
+     * This takes constant time, since the number of boxes outside the destinations is updated on every move and undo.
      *
      * @return true is the game wins.
      */
     public boolean isWin() {
-        for (int i = 0; i < getMapMaxHeight(); i++) {
-            for (int j = 0; j < getMapMaxWidth(); j++) {
-                // if there is a box not in box des. -> not winning
-                Entity entity = getEntity(new Position(j, i));
-                if ((entity instanceof Box) && (!getDestinations().contains(new Position(j, i)))) {
-                    return false;
-                }
-            }
+        return boxesOutsideDestinations == 0;
+    }
+
+    /**
+     * Check whether the game can no longer be won, because a box pushed by {@link AbstractSokobanGame} since
+     * the game starts can never reach a box destination again, see {@link DeadlockDetector}.
+     * Only undoing the push can get out of it.
+     * Not every unwinnable state is detected, but a detected one is never winnable.
+     *
+     * @return true if the game is known to be unwinnable.
+     */
+    public boolean isDeadlocked() {
+        return deadlocked;
+    }
+
+    /**
+     * Check whether the box just pushed to the given position is deadlocked, looking only at its neighborhood.
+     *
+     * @param position The position of the box.
+     */
+    void checkDeadlockAt(Position position) {
+        final int index = gameMap.indexOf(position);
+        if (!deadlocked && Cell.isBox(cells[index])) {
+            deadlocked = deadlockDetector.isDeadlocked(index);
         }
-        // if all boxes in the box des. -> win
-        return true;
+    }
+
+    /**
+     * Get a 64-bit Zobrist hash of the current placement of players and boxes.
+     * Game states of maps with the same width always have the same hash when they have the same placement,
+     * no matter how they got there, so the hash can be used to detect repeated states.
+     * Different placements have the same hash only by a negligible chance.
+     * This takes constant time, since the hash is updated on every move and undo.
+     *
+     * @return the hash.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Get the hash the state would have after the player with the given id tries to move in a direction,
+     * following the rules of {@link AbstractSokobanGame}, without changing anything.
+     *
+     * @param id        player id.
+     * @param direction the direction to move.
+     * @return the hash after the move, see {@link GameState#getStateHash()},
+     * or the current hash if the move would fail.
+     */
+    public long getStateHashAfter(int id, @NotNull Direction direction) {
+        final int outcome = tryMoveBits(id, direction);
+        if (outcome == 0) {
+            return stateHash;
+        }
+        final int from = playerCells[id];
+        final int next = neighborCell(from, direction);
+        final byte player = cells[from];
+        final long walked = stateHash ^ Cell.zobristKey(from, player) ^ Cell.zobristKey(next, player);
+        if (outcome == MOVE_BIT) {
+            return walked;
+        }
+        final int beyond = neighborCell(next, direction);
+        return walked ^ Cell.zobristKey(next, cells[next]) ^ Cell.zobristKey(beyond, cells[next]);
+    }
+
+    /**
+     * Find the moves the player with the given id can make, following the rules of {@link AbstractSokobanGame},
+     * without changing anything or allocating.
+     * Bit {@code d.ordinal()} of the result is set if the player can move in direction {@code d},
+     * and bit {@code d.ordinal() + 4} is set as well if that move pushes a box,
+     * see {@link GameState#isLegal(int, Direction)} and {@link GameState#isPush(int, Direction)}.
+     *
+     * @param id player id.
+     * @return the bitmask of legal moves, 0 if there are none or there is no such player.
+     */
+    public int legalMoves(int id) {
+        int mask = 0;
+        for (Direction direction : DIRECTIONS) {
+            mask |= tryMoveBits(id, direction) << direction.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * @param legalMoves a bitmask returned by {@link GameState#legalMoves(int)}.
+     * @param direction  a direction.
+     * @return true if the player can move in the direction.
+     */
+    public static boolean isLegal(int legalMoves, @NotNull Direction direction) {
+        return (legalMoves & (MOVE_BIT << direction.ordinal())) != 0;
+    }
+
+    /**
+     * @param legalMoves a bitmask returned by {@link GameState#legalMoves(int)}.
+     * @param direction  a direction.
+     * @return true if moving in the direction pushes a box.
+     */
+    public static boolean isPush(int legalMoves, @NotNull Direction direction) {
+        return (legalMoves & (PUSH_BIT << direction.ordinal())) != 0;
+    }
+
+    /**
+     * @return 0 if the move fails, {@code MOVE_BIT} if the player only walks,
+     * and {@code MOVE_BIT | PUSH_BIT} if the player pushes its box.
+     */
+    private int tryMoveBits(int id, Direction direction) {
+        final int from = getPlayerCell(id);
+        if (from < 0) {
+            return 0;
+        }
+        final int next = neighborCell(from, direction);
+        if (next < 0) {
+            return 0;
+        }
+        if (cells[next] == Cell.EMPTY) {
+            return MOVE_BIT;
+        }
+        if (cells[next] != Cell.box(id)) {
+            return 0;
+        }
+        final int beyond = neighborCell(next, direction);
+        return (beyond >= 0 && cells[beyond] == Cell.EMPTY) ? MOVE_BIT | PUSH_BIT : 0;
+    }
+
+    /**
+     * @return the index of the cell next to the given one in the direction, or -1 if it is outside the map.
+     */
+    private int neighborCell(int index, Direction direction) {
+        final int x = index % width + direction.getDx();
+        final int y = index / width + direction.getDy();
+        if (x < 0 || x >= width || y < 0 || y >= gameMap.getMaxHeight()) {
+            return -1;
+        }
+        return y * width + x;
+    }
+
+    /**
+     * Get the minimum number of pushes needed to move a box from each floor cell onto each box destination,
+     * shared with the game map, see {@link GameMap#getPushDistances()}.
+     *
+     * @return the push distances.
+     */
+    public @NotNull PushDistances getPushDistances() {
+        return gameMap.getPushDistances();
+    }
+
+    /**
+     * Get the goal rooms of the map, shared with the game map, see {@link GameMap#getGoalRooms()}.
+     *
+     * @return the goal rooms.
+     */
+    public @NotNull @Unmodifiable List<GoalRoom> getGoalRooms() {
+        return gameMap.getGoalRooms();
     }
 
     /**
@@ -155,21 +452,71 @@ public class GameState {
      * @param to   The position to move the entity to.
      */
     public void move(Position from, Position to) {
-        Entity entity = getEntity(from);
-        if (entity instanceof Player) {
-            int id = ((Player)entity).getId();
-            char charID = (char)(id+65);
-            currentPlayerLocations.remove(charID);
-            currentPlayerLocations.put(charID, new Position(to.x(), to.y()));
-        } else if (entity instanceof Box) {
-            int id = ((Box)entity).getPlayerId();
-            char charID = (char)(id+97);
-            currentBoxLocations.remove(from);
-            currentBoxLocations.put(to, charID);
+        final int fromIndex = gameMap.indexOf(from);
+        final int toIndex = gameMap.indexOf(to);
+        writeCell(toIndex, cells[fromIndex]);
+        writeCell(fromIndex, Cell.EMPTY);
+    }
+
+    /**
+     * Put an entity into a cell, recording the overwritten entity in the undo log.
+     */
+    private void writeCell(int index, byte cell) {
+        undoLog.record(index, cells[index]);
+        setCell(index, cell);
+    }
+
+    /**
+     * Put an entity into a cell and keep the box and player locations up to date.
+     */
+    private void setCell(int index, byte cell) {
+        final byte previous = cells[index];
+        if (Cell.isPlayer(previous) || Cell.isBox(previous)) {
+            stateHash ^= Cell.zobristKey(index, previous);
+        }
+        if (Cell.isPlayer(cell) || Cell.isBox(cell)) {
+            stateHash ^= Cell.zobristKey(index, cell);
+        }
+        if (Cell.isBox(previous) || Cell.isBox(cell)) {
+            reachability.boxesChanged();
+        }
+        if (Cell.isBox(previous)) {
+            removeBox(Cell.playerIdOf(previous), index);
+            if (!destinationCells[index]) {
+                boxesOutsideDestinations--;
+            }
+        }
+        if (Cell.isPlayer(cell)) {
+            playerCells[Cell.playerIdOf(cell)] = index;
+            reachability.playerPlaced(Cell.playerIdOf(cell));
+        } else if (Cell.isBox(cell)) {
+            addBox(Cell.playerIdOf(cell), index);
+            if (!destinationCells[index]) {
+                boxesOutsideDestinations++;
+            }
+        }
+        cells[index] = cell;
+    }
+
+    private void addBox(int id, int index) {
+        if (boxCounts[id] == boxCells[id].length) {
+            boxCells[id] = Arrays.copyOf(boxCells[id], boxCounts[id] * 2 + 1);
+        }
+        boxCells[id][boxCounts[id]++] = index;
+    }
 
+    /**
+     * Remove a box from the list of its player by swapping in the last box of the list.
+     * A player usually has a handful of boxes, so the linear search is cheaper than keeping an index of every cell.
+     */
+    private void removeBox(int id, int index) {
+        final int[] list = boxCells[id];
+        for (int i = 0; i < boxCounts[id]; i++) {
+            if (list[i] == index) {
+                list[i] = list[--boxCounts[id]];
+                return;
+            }
         }
-        GameMap.entityArray[to.y()][to.x()] = GameMap.entityArray[from.y()][from.x()];
-        GameMap.entityArray[from.y()][from.x()] = new Empty();
     }
 
     /**
@@ -179,27 +526,11 @@ public class GameState {
      * <p>
      * Checkpoint is used in {@link GameState#undo()}.
      * Every undo actions reverts the game state to the last checkpoint.
+     * Only the cells changed since the previous checkpoint are stored, so a checkpoint costs O(1) memory.
+     * If the game has an undo limit, checkpoints that can no longer be undone are dropped.
      */
     public void checkpoint() {
-        // perform deep copy to store the current state
-        Entity[][] entityArrayCheckpoint = new Entity[getMapMaxHeight()][getMapMaxWidth()];
-        for (int i = 0; i < entityArrayCheckpoint.length; i++) {
-            for (int j = 0; j < entityArrayCheckpoint[0].length; j++) {
-                Entity entity = getEntity(new Position(j, i));
-                if (entity instanceof Player) {
-                    entityArrayCheckpoint[i][j] = new Player(((Player)entity).getId());
-                } else if (entity instanceof Box) {
-                    entityArrayCheckpoint[i][j] = new Box(((Box)entity).getPlayerId());
-                } else if (entity instanceof Wall) {
-                    entityArrayCheckpoint[i][j] = new Wall();
-                } else if (entity instanceof Empty) {
-                    entityArrayCheckpoint[i][j] = new Empty();
-                } else { // outside the wall
-                    entityArrayCheckpoint[i][j] = null;
-                }
-            }
-        }
-        moveHistoryOfEntity.push(entityArrayCheckpoint);
+        undoLog.checkpoint();
     }
 
     /**
@@ -210,40 +541,47 @@ public class GameState {
      * revert to the initial game state.
      */
     public void undo() {
-        if (moveHistoryOfEntity.size() > 1) { // have move history (not only init state)
-            moveHistoryOfEntity.pop(); // remove the recent move
-            // perform deep copy to get back previous state
-            Entity[][] entityArrayCheckpoint = moveHistoryOfEntity.peek(); // get the last move
-            for (int i = 0; i < entityArrayCheckpoint.length; i++) {
-                for (int j = 0; j < entityArrayCheckpoint[0].length; j++) {
-                    Entity entity = entityArrayCheckpoint[i][j];
-                    if (entity instanceof Player) {
-                        int id = ((Player) entity).getId();
-                        char charID = (char) (id + 65);
-                        gameMap.entityArray[i][j] = new Player(id);
-                        currentPlayerLocations.remove(charID);
-                        currentPlayerLocations.put(charID, new Position(j, i));
-                    } else if (entity instanceof Box) {
-                        int id = ((Box) entity).getPlayerId();
-                        char charID = (char) (id + 97);
-                        gameMap.entityArray[i][j] = new Box(id);
-                        currentBoxLocations.remove(new Position(j, i));
-                        currentBoxLocations.put(new Position(j, i), charID);
-                    } else if (entity instanceof Wall) {
-                        gameMap.entityArray[i][j] = new Wall();
-                    } else if (entity instanceof Empty) {
-                        gameMap.entityArray[i][j] = new Empty();
-                    } else { // outside the wall
-                        gameMap.entityArray[i][j] = null;
-                    }
-                }
+        if (undoLog.hasCheckpoint()) { // have move history (not only init state)
+            undoLog.popCheckpoint();
+            // revert the changed cells in reverse order
+            while (undoLog.hasRecordsAfterCheckpoint()) {
+                final int index = undoLog.lastCell();
+                setCell(index, undoLog.removeLast());
             }
             if (undoQuota != -1) {
                 undoQuota--;
             }
+            if (deadlocked) { // the deadlocked box may have been pulled back
+                deadlocked = isAnyBoxDeadlocked();
+            }
         }
     }
 
+    private boolean isAnyBoxDeadlocked() {
+        for (int id = 0; id < Entities.MAX_PLAYERS; id++) {
+            for (int i = 0; i < boxCounts[id]; i++) {
+                if (deadlockDetector.isDeadlocked(boxCells[id][i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the game map from which this game state is created.
+     */
+    GameMap getGameMap() {
+        return gameMap;
+    }
+
+    /**
+     * @return a copy of the current board, one {@link Cell} code per cell indexed by {@code y * width + x}.
+     */
+    byte[] copyCells() {
+        return cells.clone();
+    }
+
     /**
      * Get the maximum width of the game map.
      * This should be the same as that in {@link GameMap} class.
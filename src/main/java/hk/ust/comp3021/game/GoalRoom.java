@@ -0,0 +1,27 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.actions.Direction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An area of a map holding box destinations that can only be entered through one door, see {@link GameMap#getGoalRooms()}.
+ * <p>
+ * Boxes enter a goal room one at a time through the entrance, so its destinations can be filled in a fixed order
+ * in which no filled destination blocks a later one. While the room holds no boxes except those on the destinations
+ * filled before, the pushes moving the next box from the entrance onto its destination are known in advance.
+ *
+ * @param entrance  The door cell, with walls on both sides across the direction.
+ * @param direction The direction from the entrance into the room.
+ * @param cells     The cells of the room, not including the entrance.
+ * @param fillOrder The destinations of the room in the order to fill them.
+ * @param routes    The pushes moving a box from the entrance onto each destination of the fill order,
+ *                  while the destinations before it are filled, as the directions of the pushes.
+ *                  Every route starts with a push in the direction of the room.
+ */
+public record GoalRoom(@NotNull Position entrance, @NotNull Direction direction, @NotNull @Unmodifiable Set<Position> cells,
+                       @NotNull @Unmodifiable List<Position> fillOrder, @NotNull @Unmodifiable List<List<Direction>> routes) {
+}
@@ -0,0 +1,357 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.actions.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the goal rooms of a map, see {@link GoalRoom}.
+ * <p>
+ * A door is a floor cell with walls on both sides across a direction and floor on both sides along it.
+ * The cells reachable from one side of a door without crossing it form a room if they do not lead back to the other
+ * side, are no larger than {@link GoalRooms#MAX_AREA}, and hold destinations. A corridor leading to a room has
+ * a door on every cell, so only the smallest room holding the same destinations is kept.
+ * <p>
+ * The fill order is built greedily: the next destination is the one farthest from the entrance by pushes
+ * after which all remaining destinations can still be reached, and a room without such an order is dropped.
+ * The pushes are found by a breadth-first search over the cell of the box and the side the player stands on,
+ * within the room, the entrance and the cell in front of the entrance.
+ */
+final class GoalRooms {
+    /**
+     * The largest number of cells of a room, which bounds the searches for the fill order.
+     */
+    static final int MAX_AREA = 128;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+    private final boolean[] destinationCells;
+
+    private GoalRooms(int width, int height, byte[] cells, boolean[] destinationCells) {
+        this.width = width;
+        this.height = height;
+        this.cells = cells;
+        this.destinationCells = destinationCells;
+    }
+
+    /**
+     * @param width            the width of the map.
+     * @param height           the height of the map.
+     * @param cells            the layout of the map as {@link Cell} codes.
+     * @param destinationCells whether each cell is a box destination.
+     * @return the goal rooms, ordered by entrance.
+     */
+    static List<GoalRoom> find(int width, int height, byte[] cells, boolean[] destinationCells) {
+        return new GoalRooms(width, height, cells, destinationCells).find();
+    }
+
+    private List<GoalRoom> find() {
+        // the smallest room found so far for each set of destinations
+        final Map<List<Integer>, Room> rooms = new LinkedHashMap<>();
+        for (int entrance = 0; entrance < cells.length; entrance++) {
+            if (!isFloor(entrance)) {
+                continue;
+            }
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                final int inside = step(entrance, direction);
+                final int outside = step(entrance, direction ^ 1);
+                if (inside < 0 || outside < 0 || !isWalledAcross(entrance, direction)) {
+                    continue;
+                }
+                final int[] area = flood(inside, entrance, outside);
+                if (area == null) {
+                    continue;
+                }
+                final List<Integer> goals = new ArrayList<>();
+                for (int cell : area) {
+                    if (destinationCells[cell]) {
+                        goals.add(cell);
+                    }
+                }
+                if (goals.isEmpty()) {
+                    continue;
+                }
+                Collections.sort(goals);
+                final Room existing = rooms.get(goals);
+                if (existing == null || existing.area.length > area.length) {
+                    rooms.put(goals, new Room(entrance, direction, outside, area, goals));
+                }
+            }
+        }
+        final List<GoalRoom> result = new ArrayList<>();
+        for (Room room : rooms.values()) {
+            final GoalRoom goalRoom = room.fill();
+            if (goalRoom != null) {
+                result.add(goalRoom);
+            }
+        }
+        result.sort((a, b) -> Integer.compare(indexOf(a.entrance()), indexOf(b.entrance())));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the cells reachable from the start without crossing the door, or null if they include the cell on the
+     * other side of the door or are too many.
+     */
+    private int[] flood(int start, int door, int otherSide) {
+        final Set<Integer> visited = new LinkedHashSet<>();
+        visited.add(start);
+        final int[] queue = new int[MAX_AREA];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            final int cell = queue[head++];
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                final int next = step(cell, direction);
+                if (next < 0 || next == door || visited.contains(next)) {
+                    continue;
+                }
+                if (next == otherSide || tail == MAX_AREA) {
+                    return null;
+                }
+                visited.add(next);
+                queue[tail++] = next;
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+
+    private boolean isWalledAcross(int cell, int direction) {
+        final int across = (direction < 2) ? 2 : 0; // UP and DOWN are across LEFT and RIGHT, and vice versa
+        return step(cell, across) < 0 && step(cell, across + 1) < 0;
+    }
+
+    /**
+     * @return the floor cell next to the cell in the direction, or -1 if it is not a floor cell.
+     */
+    private int step(int cell, int direction) {
+        final int x = cell % width + DIRECTIONS[direction].getDx();
+        final int y = cell / width + DIRECTIONS[direction].getDy();
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return -1;
+        }
+        return isFloor(y * width + x) ? y * width + x : -1;
+    }
+
+    private boolean isFloor(int cell) {
+        return cells[cell] != Cell.WALL && cells[cell] != Cell.OUTSIDE;
+    }
+
+    private int indexOf(Position position) {
+        return position.y() * width + position.x();
+    }
+
+    private Position positionOf(int cell) {
+        return Position.of(cell % width, cell / width);
+    }
+
+    /**
+     * A candidate room, whose cells are numbered locally: the room cells first, then the entrance and the cell in
+     * front of it.
+     */
+    private final class Room {
+        private final int entrance;
+        private final int direction;
+        private final int[] area;
+        private final List<Integer> goals;
+        /**
+         * The map cell of each local cell.
+         */
+        private final int[] cellOf;
+        /**
+         * The local neighbor of each local cell in each direction at {@code local * 4 + direction}, -1 if there is none.
+         */
+        private final int[] neighbors;
+        /**
+         * Whether each local cell holds a box on a filled destination.
+         */
+        private final boolean[] filled;
+        private final int[] previous;
+        private final int[] queue;
+        private final int[] playerQueue;
+        private final int[] playerVisited;
+        private int generation = 0;
+
+        Room(int entrance, int direction, int outside, int[] area, List<Integer> goals) {
+            this.entrance = entrance;
+            this.direction = direction;
+            this.area = area;
+            this.goals = goals;
+            this.cellOf = Arrays.copyOf(area, area.length + 2);
+            cellOf[area.length] = entrance;
+            cellOf[area.length + 1] = outside;
+            final Map<Integer, Integer> localOf = new HashMap<>();
+            for (int local = 0; local < cellOf.length; local++) {
+                localOf.put(cellOf[local], local);
+            }
+            this.neighbors = new int[cellOf.length * DIRECTIONS.length];
+            for (int local = 0; local < cellOf.length; local++) {
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    final int next = step(cellOf[local], d);
+                    neighbors[local * DIRECTIONS.length + d] = (next < 0) ? -1 : localOf.getOrDefault(next, -1);
+                }
+            }
+            this.filled = new boolean[cellOf.length];
+            this.previous = new int[cellOf.length * DIRECTIONS.length];
+            this.queue = new int[cellOf.length * DIRECTIONS.length];
+            this.playerQueue = new int[cellOf.length];
+            this.playerVisited = new int[cellOf.length];
+        }
+
+        /**
+         * Build the fill order of the room.
+         *
+         * @return the goal room, or null if its destinations cannot all be filled from the entrance.
+         */
+        GoalRoom fill() {
+            final List<Integer> remaining = new ArrayList<>();
+            for (int goal : goals) {
+                remaining.add(localOf(goal));
+            }
+            final List<Position> fillOrder = new ArrayList<>();
+            final List<List<Direction>> routes = new ArrayList<>();
+            while (!remaining.isEmpty()) {
+                final List<int[]> candidates = new ArrayList<>();
+                final List<Integer> candidateGoals = new ArrayList<>();
+                for (int goal : remaining) {
+                    final int[] route = route(goal);
+                    if (route != null) {
+                        candidates.add(route);
+                        candidateGoals.add(goal);
+                    }
+                }
+                int chosen = -1;
+                while (chosen < 0 && !candidates.isEmpty()) {
+                    int farthest = 0;
+                    for (int i = 1; i < candidates.size(); i++) {
+                        if (candidates.get(i).length > candidates.get(farthest).length) {
+                            farthest = i;
+                        }
+                    }
+                    final int goal = candidateGoals.get(farthest);
+                    filled[goal] = true;
+                    boolean blocksOthers = false;
+                    for (int other : remaining) {
+                        if (other != goal && route(other) == null) {
+                            blocksOthers = true;
+                            break;
+                        }
+                    }
+                    if (blocksOthers) {
+                        filled[goal] = false;
+                        candidates.remove(farthest);
+                        candidateGoals.remove(farthest);
+                    } else {
+                        chosen = farthest;
+                    }
+                }
+                if (chosen < 0) {
+                    return null;
+                }
+                final int goal = candidateGoals.get(chosen);
+                remaining.remove(Integer.valueOf(goal));
+                fillOrder.add(positionOf(cellOf[goal]));
+                final List<Direction> route = new ArrayList<>();
+                for (int d : candidates.get(chosen)) {
+                    route.add(DIRECTIONS[d]);
+                }
+                routes.add(Collections.unmodifiableList(route));
+            }
+            final Set<Position> roomCells = new LinkedHashSet<>();
+            for (int cell : area) {
+                roomCells.add(positionOf(cell));
+            }
+            return new GoalRoom(positionOf(entrance), DIRECTIONS[direction], Collections.unmodifiableSet(roomCells),
+                    Collections.unmodifiableList(fillOrder), Collections.unmodifiableList(routes));
+        }
+
+        private int localOf(int cell) {
+            for (int local = 0; local < area.length; local++) {
+                if (cellOf[local] == cell) {
+                    return local;
+                }
+            }
+            throw new IllegalArgumentException("Not a cell of the room: " + cell);
+        }
+
+        /**
+         * Breadth-first search for the fewest pushes moving a box from the entrance onto the target,
+         * with the player starting in front of the entrance.
+         * A state is {@code box * 4 + direction}, where the player stands behind the box against the direction.
+         *
+         * @return the directions of the pushes, or null if the box cannot get there.
+         */
+        private int[] route(int target) {
+            final int boxCells = area.length + 1; // the box never leaves the room and the entrance
+            Arrays.fill(previous, -2);
+            int head = 0;
+            int tail = 0;
+            final int start = area.length * DIRECTIONS.length + direction;
+            previous[start] = -1;
+            queue[tail++] = start;
+            while (head < tail) {
+                final int state = queue[head++];
+                final int box = state / DIRECTIONS.length;
+                if (box == target) {
+                    return pushesTo(state);
+                }
+                fillPlayer(neighbors[box * DIRECTIONS.length + ((state % DIRECTIONS.length) ^ 1)], box);
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    final int behind = neighbors[box * DIRECTIONS.length + (d ^ 1)];
+                    final int next = neighbors[box * DIRECTIONS.length + d];
+                    if (behind < 0 || next < 0 || next >= boxCells || filled[next] || playerVisited[behind] != generation) {
+                        continue;
+                    }
+                    final int child = next * DIRECTIONS.length + d;
+                    if (previous[child] == -2) {
+                        previous[child] = state;
+                        queue[tail++] = child;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Mark the local cells the player can walk to in {@link Room#playerVisited} with a new generation.
+         */
+        private void fillPlayer(int start, int box) {
+            generation++;
+            int head = 0;
+            int tail = 0;
+            playerVisited[start] = generation;
+            playerQueue[tail++] = start;
+            while (head < tail) {
+                final int cell = playerQueue[head++];
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    final int next = neighbors[cell * DIRECTIONS.length + d];
+                    if (next >= 0 && next != box && !filled[next] && playerVisited[next] != generation) {
+                        playerVisited[next] = generation;
+                        playerQueue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        private int[] pushesTo(int state) {
+            final List<Integer> pushes = new ArrayList<>();
+            for (int s = state; previous[s] >= 0; s = previous[s]) {
+                pushes.add(s % DIRECTIONS.length);
+            }
+            Collections.reverse(pushes);
+            return pushes.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Entities;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A file holding many levels, which are parsed one at a time on demand.
+ * <p>
+ * Opening a pack only finds where each level starts and how long it is, so a level is parsed by reading its own bytes
+ * and nothing else, and the pack is never held in memory as a whole. The offsets are found by streaming through
+ * the file once, or are read from the index file written by {@link LevelPack#writeIndex()}, which is used as long as
+ * the size and the modification time of the pack match those it was written for.
+ * <p>
+ * Two formats are supported, see {@link Format}.
+ */
+public final class LevelPack implements Closeable {
+    /**
+     * The first bytes of an index file, "SKPX".
+     */
+    private static final int INDEX_MAGIC = 0x534B5058;
+    /**
+     * The characters of a row of a level in the XSB format.
+     */
+    private static final String XSB_ROW_CHARS = "#@+$*.-_ \t\r";
+
+    private final Path file;
+    private final Format format;
+    private final FileChannel channel;
+    private final long[] starts;
+    private final int[] lengths;
+
+    /**
+     * The format of the levels in a pack.
+     */
+    public enum Format {
+        /**
+         * Levels in the format of {@link GameMap#parse(String)}, i.e., the undo limit followed by the rows,
+         * separated by blank lines.
+         */
+        NATIVE,
+        /**
+         * The XSB format of common level collections: {@code #} is a wall, {@code @} the player, {@code $} a box,
+         * {@code .} a destination, {@code *} a box on a destination, {@code +} the player on a destination,
+         * and a space, {@code -} or {@code _} a floor. A level is a run of such rows; the lines between levels,
+         * such as titles and comments, are skipped. The player has id 0, i.e., "A", and undo is unlimited.
+         */
+        XSB;
+
+        /**
+         * @param file the pack file.
+         * @return {@link Format#XSB} for files named {@code *.xsb} or {@code *.sok}, {@link Format#NATIVE} otherwise.
+         */
+        public static @NotNull Format of(@NotNull Path file) {
+            final var name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return (name.endsWith(".xsb") || name.endsWith(".sok")) ? XSB : NATIVE;
+        }
+    }
+
+    private LevelPack(Path file, Format format, FileChannel channel, long[] starts, int[] lengths) {
+        this.file = file;
+        this.format = format;
+        this.channel = channel;
+        this.starts = starts;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Open a pack, with the format given by its file name, see {@link Format#of(Path)}.
+     *
+     * @param file the pack file.
+     * @return the opened pack, which has to be closed.
+     * @throws IOException when the pack cannot be read.
+     */
+    public static @NotNull LevelPack open(@NotNull Path file) throws IOException {
+        return open(file, Format.of(file));
+    }
+
+    /**
+     * Open a pack.
+     *
+     * @param file   the pack file.
+     * @param format the format of the levels in the pack.
+     * @return the opened pack, which has to be closed.
+     * @throws IOException when the pack cannot be read.
+     */
+    public static @NotNull LevelPack open(@NotNull Path file, @NotNull Format format) throws IOException {
+        final var channel = FileChannel.open(file);
+        try {
+            final long size = channel.size();
+            final long modified = Files.getLastModifiedTime(file).toMillis();
+            final var index = readIndex(indexFileOf(file), format, size, modified);
+            if (index != null) {
+                return new LevelPack(file, format, channel, index.starts, index.lengths);
+            }
+            final var scanned = scan(file, format);
+            return new LevelPack(file, format, channel, scanned.starts, scanned.lengths);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param file the pack file.
+     * @return the index file of the pack, i.e., the pack file name followed by {@code .idx}.
+     */
+    public static @NotNull Path indexFileOf(@NotNull Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * @return the number of levels in the pack.
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * @return the format of the levels in the pack.
+     */
+    public @NotNull Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Read and parse one level, without reading any other level.
+     * Levels are read with positional reads, so they may be read from several threads at a time.
+     *
+     * @param index the index of the level, starting from 0.
+     * @return the parsed level.
+     * @throws IndexOutOfBoundsException if there is no such level.
+     * @throws IllegalArgumentException  if the level is not valid, see {@link GameMap#parse(String)}.
+     * @throws IOException               when the level cannot be read.
+     */
+    public @NotNull GameMap getLevel(int index) throws IOException {
+        final var text = getLevelText(index);
+        return (format == Format.NATIVE) ? GameMap.parse(text) : parseXsb(text);
+    }
+
+    /**
+     * @param index the index of the level, starting from 0.
+     * @return the text of the level in the format of the pack.
+     * @throws IndexOutOfBoundsException if there is no such level.
+     * @throws IOException               when the level cannot be read.
+     */
+    public @NotNull String getLevelText(int index) throws IOException {
+        Objects.checkIndex(index, size());
+        final var buffer = ByteBuffer.allocate(lengths[index]);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, starts[index] + buffer.position()) < 0) {
+                throw new EOFException("The pack has been truncated: " + file);
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the offsets of the levels to the index file of the pack, see {@link LevelPack#indexFileOf(Path)},
+     * so opening the pack again does not have to stream through it.
+     *
+     * @throws IOException when the index file cannot be written.
+     */
+    public void writeIndex() throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFileOf(file))))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeByte(format.ordinal());
+            out.writeLong(channel.size());
+            out.writeLong(Files.getLastModifiedTime(file).toMillis());
+            out.writeInt(size());
+            for (int i = 0; i < size(); i++) {
+                out.writeLong(starts[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The offsets and lengths in bytes of the levels of a pack.
+     */
+    private record Index(long[] starts, int[] lengths) {
+    }
+
+    /**
+     * @return the index, or null if there is no index file or it was written for another version of the pack.
+     */
+    private static Index readIndex(Path indexFile, Format format, long size, long modified) throws IOException {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        final var in = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+        try {
+            if (in.getInt() != INDEX_MAGIC || in.get() != format.ordinal() || in.getLong() != size || in.getLong() != modified) {
+                return null;
+            }
+            final int count = in.getInt();
+            final long[] starts = new long[count];
+            final int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                starts[i] = in.getLong();
+                lengths[i] = in.getInt();
+            }
+            return new Index(starts, lengths);
+        } catch (BufferUnderflowException e) { // a truncated index is as good as none
+            return null;
+        }
+    }
+
+    /**
+     * Stream through the pack once, line by line, keeping only the offsets of the levels.
+     */
+    private static Index scan(Path file, Format format) throws IOException {
+        long[] starts = new long[64];
+        int[] lengths = new int[64];
+        int count = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            byte[] line = new byte[256];
+            long offset = 0; // the offset of the current line
+            long levelStart = -1;
+            long levelEnd = -1;
+            int b = 0;
+            while (b >= 0) {
+                int length = 0;
+                while ((b = in.read()) >= 0 && b != '\n') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = (byte) b;
+                }
+                final long next = offset + length + ((b < 0) ? 0 : 1);
+                final boolean inLevel = (format == Format.NATIVE) ? !isBlank(line, length) : isXsbRow(line, length);
+                if (inLevel) {
+                    if (levelStart < 0) {
+                        levelStart = offset;
+                    }
+                    levelEnd = next;
+                }
+                if ((!inLevel || b < 0) && levelStart >= 0) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        lengths = Arrays.copyOf(lengths, count * 2);
+                    }
+                    starts[count] = levelStart;
+                    lengths[count] = Math.toIntExact(levelEnd - levelStart);
+                    count++;
+                    levelStart = -1;
+                }
+                offset = next;
+            }
+        }
+        return new Index(Arrays.copyOf(starts, count), Arrays.copyOf(lengths, count));
+    }
+
+    private static boolean isBlank(byte[] line, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the line is a row of a level in the XSB format, i.e., it only has XSB characters and a wall.
+     */
+    private static boolean isXsbRow(byte[] line, int length) {
+        boolean hasWall = false;
+        for (int i = 0; i < length; i++) {
+            if (XSB_ROW_CHARS.indexOf(line[i]) < 0) {
+                return false;
+            }
+            hasWall |= line[i] == '#';
+        }
+        return hasWall;
+    }
+
+    /**
+     * Parse a level in the XSB format, see {@link Format#XSB}.
+     * Spaces are floor only if the player can walk to them, the others are outside the map.
+     *
+     * @param text the rows of the level.
+     * @return the parsed level.
+     * @throws IllegalArgumentException if there is not exactly one player,
+     *                                  or if the number of boxes is zero or not equal to the number of destinations.
+     */
+    static @NotNull GameMap parseXsb(@NotNull String text) {
+        final String[] rows = text.split("\r?\n");
+        int width = 0;
+        for (String row : rows) {
+            width = Math.max(width, row.length());
+        }
+        final int height = rows.length;
+        final char[] cells = new char[width * height];
+        Arrays.fill(cells, ' ');
+        final Set<Position> destinations = new HashSet<>();
+        int player = -1;
+        int boxes = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                final char c = rows[y].charAt(x);
+                cells[y * width + x] = c;
+                if (c == '.' || c == '*' || c == '+') {
+                    destinations.add(Position.of(x, y));
+                }
+                if (c == '@' || c == '+') {
+                    if (player >= 0) {
+                        throw new IllegalArgumentException("More than one player in the level");
+                    }
+                    player = y * width + x;
+                } else if (c == '$' || c == '*') {
+                    boxes++;
+                }
+            }
+        }
+        if (player < 0) {
+            throw new IllegalArgumentException("No player in the level");
+        }
+        if (boxes == 0 || boxes != destinations.size()) {
+            throw new IllegalArgumentException("The numbers of boxes and destinations differ: " + boxes
+                    + " and " + destinations.size());
+        }
+
+        final boolean[] inside = new boolean[cells.length];
+        final int[] queue = new int[cells.length];
+        int head = 0;
+        int tail = 0;
+        inside[player] = true;
+        queue[tail++] = player;
+        while (head < tail) {
+            final int cell = queue[head++];
+            final int x = cell % width;
+            final int y = cell / width;
+            final int[] neighbors = {(y > 0) ? cell - width : -1, (y < height - 1) ? cell + width : -1,
+                    (x > 0) ? cell - 1 : -1, (x < width - 1) ? cell + 1 : -1};
+            for (int next : neighbors) {
+                if (next >= 0 && !inside[next] && cells[next] != '#') {
+                    inside[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        final GameMap gameMap = new GameMap(width, height, destinations, -1);
+        for (int cell = 0; cell < cells.length; cell++) {
+            final var position = Position.of(cell % width, cell / width);
+            switch (cells[cell]) {
+                case '#' -> gameMap.putEntity(position, Entities.wall());
+                case '@', '+' -> gameMap.putEntity(position, Entities.player(0));
+                case '$', '*' -> gameMap.putEntity(position, Entities.box(0));
+                case '.', '-', '_' -> gameMap.putEntity(position, Entities.empty());
+                default -> {
+                    if (inside[cell]) {
+                        gameMap.putEntity(position, Entities.empty());
+                    }
+                }
+            }
+        }
+        return gameMap;
+    }
+}
@@ -0,0 +1,43 @@
+package hk.ust.comp3021.game;
+
+/**
+ * The outcome of a player trying to move one step, following the rules of
+ * {@link AbstractSokobanGame#processAction(hk.ust.comp3021.actions.Action)}.
+ */
+public enum MoveOutcome {
+    /**
+     * The player moved into an empty cell.
+     */
+    MOVED,
+    /**
+     * The player pushed one of its boxes and moved into the cell the box left.
+     */
+    PUSHED,
+    /**
+     * There is no player with the given id.
+     */
+    PLAYER_NOT_FOUND,
+    /**
+     * The player walked into a wall.
+     */
+    HIT_WALL,
+    /**
+     * The player walked into another player.
+     */
+    HIT_PLAYER,
+    /**
+     * The player tried to push a box of another player.
+     */
+    OTHERS_BOX,
+    /**
+     * The player tried to push a box into a cell that is not empty.
+     */
+    BOX_BLOCKED;
+
+    /**
+     * @return true if the player moved.
+     */
+    public boolean isSuccess() {
+        return this == MOVED || this == PUSHED;
+    }
+}
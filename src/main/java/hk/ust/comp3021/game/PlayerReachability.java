@@ -0,0 +1,160 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Entities;
+
+import java.util.Arrays;
+
+/**
+ * The regions the players of a {@link GameState} can walk in without pushing any box.
+ * <p>
+ * The region of each player is cached as a bitset together with the list of its cells, which doubles as the
+ * queue of the flood fill, so both buffers are allocated once per player and reused by every later fill;
+ * a refill only clears the bits of the previous region instead of the whole map.
+ * <p>
+ * A region only depends on the obstacles around the player, i.e., boxes and other players,
+ * so the game state reports every change of them, and each region remembers the generation of the obstacles
+ * it was filled with. Walking within the region never invalidates it, so it is only filled again after a push,
+ * or after another player moves.
+ */
+final class PlayerReachability {
+    private final byte[] cells;
+    private final int width;
+    private final int height;
+    /**
+     * Incremented whenever a box is placed or removed.
+     */
+    private int boxGeneration = 0;
+    /**
+     * The number of times each player has been placed on a cell, indexed by player id, and their sum.
+     */
+    private final int[] placements = new int[Entities.MAX_PLAYERS];
+    private int totalPlacements = 0;
+    private final Region[] regions = new Region[Entities.MAX_PLAYERS];
+
+    /**
+     * @param cells  the live board of a game state, read but never modified.
+     * @param width  the width of the map.
+     * @param height the height of the map.
+     */
+    PlayerReachability(byte[] cells, int width, int height) {
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Invalidate all regions, since a box has been placed or removed.
+     */
+    void boxesChanged() {
+        boxGeneration++;
+    }
+
+    /**
+     * Invalidate the regions of all players except the given one, which has just been placed on a cell.
+     *
+     * @param id the player id.
+     */
+    void playerPlaced(int id) {
+        placements[id]++;
+        totalPlacements++;
+    }
+
+    /**
+     * @param id    the player id.
+     * @param start the cell the player stands on.
+     * @param cell  a cell of the map.
+     * @return true if the player can walk to the cell.
+     */
+    boolean isReachable(int id, int start, int cell) {
+        final long[] words = regionOf(id, start).words;
+        return (words[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * @param id    the player id.
+     * @param start the cell the player stands on.
+     * @return the smallest cell of the region of the player, the same wherever the player stands in the region.
+     */
+    int normalizedCell(int id, int start) {
+        return regionOf(id, start).normalized;
+    }
+
+    /**
+     * @param id    the player id.
+     * @param start the cell the player stands on.
+     * @return the region as {@code long} words of a bitset, shared and only valid until the next change.
+     */
+    long[] regionWords(int id, int start) {
+        return regionOf(id, start).words;
+    }
+
+    private Region regionOf(int id, int start) {
+        Region region = regions[id];
+        if (region == null) {
+            region = new Region((width * height + 63) >>> 6);
+            regions[id] = region;
+        }
+        final int otherPlacements = totalPlacements - placements[id];
+        final boolean valid = region.boxGeneration == boxGeneration && region.otherPlacements == otherPlacements
+                && (region.words[start >>> 6] & (1L << start)) != 0;
+        if (!valid) {
+            fill(region, start);
+            region.boxGeneration = boxGeneration;
+            region.otherPlacements = otherPlacements;
+        }
+        return region;
+    }
+
+    /**
+     * Breadth-first flood fill over empty cells, using the cell list of the region as the queue.
+     */
+    private void fill(Region region, int start) {
+        final long[] words = region.words;
+        for (int i = 0; i < region.size; i++) {
+            words[region.cells[i] >>> 6] = 0;
+        }
+        region.size = 0;
+        region.normalized = start;
+        words[start >>> 6] |= 1L << start;
+        region.add(start);
+        for (int head = 0; head < region.size; head++) {
+            final int cell = region.cells[head];
+            final int x = cell % width;
+            region.normalized = Math.min(region.normalized, cell);
+            visit(region, (cell >= width) ? cell - width : -1);
+            visit(region, (cell + width < width * height) ? cell + width : -1);
+            visit(region, (x > 0) ? cell - 1 : -1);
+            visit(region, (x < width - 1) ? cell + 1 : -1);
+        }
+    }
+
+    private void visit(Region region, int cell) {
+        if (cell >= 0 && cells[cell] == Cell.EMPTY && (region.words[cell >>> 6] & (1L << cell)) == 0) {
+            region.words[cell >>> 6] |= 1L << cell;
+            region.add(cell);
+        }
+    }
+
+    /**
+     * The cached region of one player.
+     */
+    private static final class Region {
+        private final long[] words;
+        private int[] cells = new int[16];
+        private int size = 0;
+        private int normalized = -1;
+        private int boxGeneration = -1;
+        private int otherPlacements = -1;
+
+        Region(int wordCount) {
+            this.words = new long[wordCount];
+        }
+
+        void add(int cell) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            cells[size++] = cell;
+        }
+    }
+}
@@ -12,15 +12,81 @@ import org.jetbrains.annotations.NotNull;
  */
 public record Position(int x, int y) {
 
+    /**
+     * The name of the system property setting the bound of the position cache.
+     * Positions with both coordinates in [0, bound) are cached by {@link Position#of(int, int)}.
+     */
+    public static final String CACHE_BOUND_PROPERTY = "hk.ust.comp3021.positionCacheBound";
+
+    private static final int CACHE_BOUND = Math.max(0, Math.min(Integer.getInteger(CACHE_BOUND_PROPERTY, 128), 4096));
+
+    /**
+     * The cached positions indexed by {@code y * CACHE_BOUND + x}, created on first use.
+     * Positions are immutable, so a racy initialization at worst creates an equal position twice.
+     */
+    private static final Position[] CACHE = new Position[CACHE_BOUND * CACHE_BOUND];
+
     /**
      * Creates a new position.
+     * Positions within the cache bound are shared instead of allocated every time.
      *
      * @param x The horizontal displacement.
      * @param y The vertical displacement.
      * @return The newly created position.
      */
     public static @NotNull Position of(int x, int y) {
-        return new Position(x, y);
+        if (x < 0 || x >= CACHE_BOUND || y < 0 || y >= CACHE_BOUND) {
+            return new Position(x, y);
+        }
+        final int index = y * CACHE_BOUND + x;
+        Position position = CACHE[index];
+        if (position == null) {
+            position = new Position(x, y);
+            CACHE[index] = position;
+        }
+        return position;
+    }
+
+    /**
+     * Encodes a position into a single {@code long}, so that hot paths can pass positions around without allocating.
+     *
+     * @param x The horizontal displacement.
+     * @param y The vertical displacement.
+     * @return The packed position.
+     */
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param packed A position packed by {@link Position#pack(int, int)}.
+     * @return The horizontal displacement.
+     */
+    public static int unpackX(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * @param packed A position packed by {@link Position#pack(int, int)}.
+     * @return The vertical displacement.
+     */
+    public static int unpackY(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    /**
+     * @param packed A position packed by {@link Position#pack(int, int)}.
+     * @return The position.
+     */
+    public static @NotNull Position ofPacked(long packed) {
+        return of(unpackX(packed), unpackY(packed));
+    }
+
+    /**
+     * @return This position packed by {@link Position#pack(int, int)}.
+     */
+    public long packed() {
+        return pack(x, y);
     }
 
 }
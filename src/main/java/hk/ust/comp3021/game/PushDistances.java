@@ -0,0 +1,306 @@
+package hk.ust.comp3021.game;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The minimum number of pushes needed to move a box from every floor cell onto every box destination,
+ * considering walls only.
+ * <p>
+ * The table is built by {@link GameMap#getPushDistances()} with one breadth-first search backwards from each
+ * destination, and it is immutable, so one table is shared by all game states and threads using the map.
+ * Distances are stored as {@code char} per floor cell and destination.
+ * Distances too long for a {@code char} are stored as the longest one that fits,
+ * which keeps every lower bound computed from the table valid.
+ */
+public final class PushDistances {
+    /**
+     * The distance of a box that can never reach the destination.
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final char NONE = Character.MAX_VALUE;
+    private static final char LONGEST = Character.MAX_VALUE - 1;
+    /**
+     * The cost of an impossible pair in a matching, large enough to never be part of a feasible matching.
+     */
+    private static final long IMPOSSIBLE = 1L << 40;
+    private static final int[][] DIRECTIONS = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
+
+    private final int width;
+    private final int height;
+    /**
+     * The floor number of each cell indexed by {@code y * width + x}, -1 for walls and cells outside the map.
+     */
+    private final int[] floorOf;
+    private final Position[] destinations;
+    /**
+     * The distances from each floor cell to each destination, at {@code [destination][floor]}.
+     */
+    private final char[][] distances;
+    /**
+     * The distance from each floor cell to its nearest destination.
+     */
+    private final char[] nearest;
+
+    /**
+     * @param width        the width of the map.
+     * @param height       the height of the map.
+     * @param cells        the layout of the map as {@link Cell} codes.
+     * @param destinations the box destinations.
+     */
+    PushDistances(int width, int height, byte @NotNull [] cells, @NotNull Set<Position> destinations) {
+        this.width = width;
+        this.height = height;
+        this.floorOf = new int[cells.length];
+        int floorCount = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            floorOf[cell] = (cells[cell] == Cell.WALL || cells[cell] == Cell.OUTSIDE) ? -1 : floorCount++;
+        }
+        this.destinations = destinations.stream()
+                .filter(it -> it.x() >= 0 && it.x() < width && it.y() >= 0 && it.y() < height)
+                .filter(it -> floorOf[it.y() * width + it.x()] >= 0)
+                .sorted(Comparator.comparingInt(Position::y).thenComparingInt(Position::x))
+                .toArray(Position[]::new);
+        this.distances = new char[this.destinations.length][];
+        this.nearest = new char[floorCount];
+        Arrays.fill(nearest, NONE);
+        final int[] queue = new int[floorCount];
+        for (int i = 0; i < this.destinations.length; i++) {
+            distances[i] = pullFrom(this.destinations[i], queue);
+            for (int floor = 0; floor < floorCount; floor++) {
+                nearest[floor] = (char) Math.min(nearest[floor], distances[i][floor]);
+            }
+        }
+    }
+
+    /**
+     * Breadth-first search pulling a box away from the destination:
+     * a box could have been pushed from the previous cell in a direction if a player could stand one cell further back.
+     */
+    private char[] pullFrom(Position destination, int[] queue) {
+        final char[] result = new char[nearest.length];
+        Arrays.fill(result, NONE);
+        final int start = destination.y() * width + destination.x();
+        int head = 0;
+        int tail = 0;
+        result[floorOf[start]] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            final int cell = queue[head++];
+            final char distance = result[floorOf[cell]];
+            final int x = cell % width;
+            final int y = cell / width;
+            for (int[] direction : DIRECTIONS) {
+                final int fromX = x - direction[0];
+                final int fromY = y - direction[1];
+                if (!isFloor(fromX, fromY) || !isFloor(fromX - direction[0], fromY - direction[1])) {
+                    continue;
+                }
+                final int from = fromY * width + fromX;
+                if (result[floorOf[from]] == NONE) {
+                    result[floorOf[from]] = (char) Math.min(distance + 1, LONGEST);
+                    queue[tail++] = from;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isFloor(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && floorOf[y * width + x] >= 0;
+    }
+
+    /**
+     * @return the number of box destinations on floor cells.
+     */
+    public int getDestinationCount() {
+        return destinations.length;
+    }
+
+    /**
+     * @param destination the number of the destination in [0, {@link PushDistances#getDestinationCount()}),
+     *                    in row-major order.
+     * @return the position of the destination.
+     */
+    public @NotNull Position getDestination(int destination) {
+        return destinations[destination];
+    }
+
+    /**
+     * @param destination the number of the destination.
+     * @param position    the position of a box.
+     * @return the minimum number of pushes to move the box onto the destination, or {@link PushDistances#UNREACHABLE}.
+     * @throws IndexOutOfBoundsException if the position is outside the map.
+     */
+    public int getDistance(int destination, @NotNull Position position) {
+        return getDistance(destination, indexOf(position));
+    }
+
+    /**
+     * @param destination the number of the destination.
+     * @param cell        the cell of a box, i.e., {@code y * width + x}.
+     * @return the minimum number of pushes to move the box onto the destination, or {@link PushDistances#UNREACHABLE}.
+     */
+    public int getDistance(int destination, int cell) {
+        final int floor = floorOf[cell];
+        return (floor < 0) ? UNREACHABLE : decode(distances[destination][floor]);
+    }
+
+    /**
+     * @param position the position of a box.
+     * @return the minimum number of pushes to move the box onto any destination, or {@link PushDistances#UNREACHABLE}.
+     * @throws IndexOutOfBoundsException if the position is outside the map.
+     */
+    public int getNearestDistance(@NotNull Position position) {
+        return getNearestDistance(indexOf(position));
+    }
+
+    /**
+     * @param cell the cell of a box, i.e., {@code y * width + x}.
+     * @return the minimum number of pushes to move the box onto any destination, or {@link PushDistances#UNREACHABLE}.
+     */
+    public int getNearestDistance(int cell) {
+        final int floor = floorOf[cell];
+        return (floor < 0) ? UNREACHABLE : decode(nearest[floor]);
+    }
+
+    /**
+     * Compute a lower bound of the pushes needed to move every box onto a different destination,
+     * see {@link Matching#lowerBound(int[], int)}.
+     * This allocates the buffers of the matching on every call; searches computing many bounds should keep a
+     * {@link Matching} instead.
+     *
+     * @param boxCells the cells of the boxes, i.e., {@code y * width + x}.
+     * @param count    the number of boxes, i.e., the first {@code count} entries of boxCells are used.
+     * @return the lower bound, or {@link PushDistances#UNREACHABLE} if the boxes cannot all reach different destinations.
+     */
+    public int lowerBound(int @NotNull [] boxCells, int count) {
+        return newMatching().lowerBound(boxCells, count);
+    }
+
+    /**
+     * @return new buffers for computing lower bounds on this table.
+     */
+    public @NotNull Matching newMatching() {
+        return new Matching();
+    }
+
+    private int indexOf(Position position) {
+        Objects.checkIndex(position.x(), width);
+        Objects.checkIndex(position.y(), height);
+        return position.y() * width + position.x();
+    }
+
+    private static int decode(char distance) {
+        return (distance == NONE) ? UNREACHABLE : distance;
+    }
+
+    /**
+     * The buffers of the minimum-cost matching between boxes and destinations, reused across calls so that
+     * a search computing a bound for every push allocates nothing. A matching is not thread-safe,
+     * so each search thread keeps its own.
+     */
+    public final class Matching {
+        private final long[] v = new long[destinations.length + 1];
+        private final int[] match = new int[destinations.length + 1];
+        private final int[] way = new int[destinations.length + 1];
+        private final long[] minValues = new long[destinations.length + 1];
+        private final boolean[] used = new boolean[destinations.length + 1];
+        private long[] u = new long[1];
+        /**
+         * The floor number of each box.
+         */
+        private int[] floors = new int[0];
+
+        private Matching() {
+        }
+
+        /**
+         * Compute a lower bound of the pushes needed to move every box onto a different destination,
+         * as the minimum-cost matching between boxes and destinations found by the Hungarian algorithm.
+         * This takes O(n<sup>2</sup>m) time for n boxes and m destinations.
+         *
+         * @param boxCells the cells of the boxes, i.e., {@code y * width + x}.
+         * @param count    the number of boxes, i.e., the first {@code count} entries of boxCells are used.
+         * @return the lower bound, or {@link PushDistances#UNREACHABLE} if the boxes cannot all reach different
+         * destinations.
+         */
+        public int lowerBound(int @NotNull [] boxCells, int count) {
+            final int m = destinations.length;
+            if (count > m) {
+                return UNREACHABLE;
+            }
+            if (floors.length < count) {
+                floors = new int[count];
+                u = new long[count + 1];
+            }
+            for (int i = 0; i < count; i++) {
+                floors[i] = floorOf[boxCells[i]];
+                if (floors[i] < 0 || nearest[floors[i]] == NONE) {
+                    return UNREACHABLE;
+                }
+            }
+            // the Hungarian algorithm with potentials, boxes are rows 1..count and destinations are columns 1..m
+            Arrays.fill(u, 0, count + 1, 0);
+            Arrays.fill(v, 0);
+            Arrays.fill(match, 0);
+            for (int row = 1; row <= count; row++) {
+                match[0] = row;
+                int column = 0;
+                Arrays.fill(minValues, Long.MAX_VALUE);
+                Arrays.fill(used, false);
+                do {
+                    used[column] = true;
+                    final int current = match[column];
+                    final int floor = floors[current - 1];
+                    long delta = Long.MAX_VALUE;
+                    int next = 0;
+                    for (int j = 1; j <= m; j++) {
+                        if (!used[j]) {
+                            final long reduced = cost(floor, j - 1) - u[current] - v[j];
+                            if (reduced < minValues[j]) {
+                                minValues[j] = reduced;
+                                way[j] = column;
+                            }
+                            if (minValues[j] < delta) {
+                                delta = minValues[j];
+                                next = j;
+                            }
+                        }
+                    }
+                    for (int j = 0; j <= m; j++) {
+                        if (used[j]) {
+                            u[match[j]] += delta;
+                            v[j] -= delta;
+                        } else {
+                            minValues[j] -= delta;
+                        }
+                    }
+                    column = next;
+                } while (match[column] != 0);
+                do {
+                    final int previous = way[column];
+                    match[column] = match[previous];
+                    column = previous;
+                } while (column != 0);
+            }
+            long total = 0;
+            for (int j = 1; j <= m; j++) {
+                if (match[j] != 0) {
+                    total += cost(floors[match[j] - 1], j - 1);
+                }
+            }
+            return (total >= IMPOSSIBLE) ? UNREACHABLE : (int) Math.min(total, UNREACHABLE - 1);
+        }
+
+        private long cost(int floor, int destination) {
+            final char distance = distances[destination][floor];
+            return (distance == NONE) ? IMPOSSIBLE : distance;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hk.ust.comp3021.game;
+
+/**
+ * A history of board changes used by {@link GameState#undo()}.
+ * Instead of copying the whole board at every checkpoint, only the cells written since the game starts are recorded,
+ * together with the {@link Cell} code each cell held before the write.
+ * A checkpoint is simply the sequence number of the next record at the time it is made.
+ * <p>
+ * Both the records and the checkpoints are kept in ring buffers.
+ * When the number of checkpoints is limited, the oldest checkpoint is dropped once it can no longer be undone,
+ * and the records before it are overwritten by new ones, so the memory used stays flat during long games.
+ */
+final class UndoLog {
+    /**
+     * The maximum number of slots allocated up front, so that huge undo limits do not allocate huge buffers
+     * for games that never use them.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+    /**
+     * The maximum number of records written between two checkpoints by {@link AbstractSokobanGame}:
+     * a push writes the box cell and then moves the player.
+     */
+    private static final int RECORDS_PER_CHECKPOINT = 4;
+
+    private final int maxCheckpoints;
+
+    private int[] cells;
+    private byte[] previousCells;
+    /**
+     * Sequence number of the oldest record kept.
+     */
+    private long firstRecord = 0;
+    /**
+     * Sequence number of the next record.
+     */
+    private long nextRecord = 0;
+
+    /**
+     * The checkpoints, including the initial state of the game as the oldest one.
+     */
+    private long[] checkpoints;
+    private int firstCheckpoint = 0;
+    private int numOfCheckpoints = 1;
+
+    /**
+     * Create an undo log.
+     *
+     * @param maxCheckpoints The maximum number of checkpoints that can be reverted, or -1 if unlimited.
+     */
+    UndoLog(int maxCheckpoints) {
+        this.maxCheckpoints = maxCheckpoints;
+        // one extra slot for the initial state, and one for the checkpoint about to be dropped
+        final long expected = (maxCheckpoints < 0) ? 16 : (long) maxCheckpoints + 2;
+        final int checkpointCapacity = ceilingPowerOfTwo(Math.min(expected, MAX_INITIAL_CAPACITY));
+        this.checkpoints = new long[checkpointCapacity];
+        this.cells = new int[checkpointCapacity * RECORDS_PER_CHECKPOINT];
+        this.previousCells = new byte[checkpointCapacity * RECORDS_PER_CHECKPOINT];
+    }
+
+    /**
+     * Record that a cell is about to be overwritten.
+     *
+     * @param cell     the index of the cell, i.e., y * width + x.
+     * @param previous the code of the cell before the write.
+     */
+    void record(int cell, byte previous) {
+        if (nextRecord - firstRecord == cells.length) {
+            growRecords();
+        }
+        final int index = (int) (nextRecord & (cells.length - 1));
+        cells[index] = cell;
+        previousCells[index] = previous;
+        nextRecord++;
+    }
+
+    /**
+     * Mark the current end of the log as a checkpoint.
+     * If the checkpoint limit is exceeded, the oldest checkpoint and the records before it are dropped.
+     */
+    void checkpoint() {
+        if (numOfCheckpoints == checkpoints.length) {
+            growCheckpoints();
+        }
+        checkpoints[(firstCheckpoint + numOfCheckpoints) & (checkpoints.length - 1)] = nextRecord;
+        numOfCheckpoints++;
+        if (maxCheckpoints >= 0 && numOfCheckpoints > maxCheckpoints + 1) {
+            firstCheckpoint = (firstCheckpoint + 1) & (checkpoints.length - 1);
+            numOfCheckpoints--;
+            firstRecord = checkpoints[firstCheckpoint]; // the records before it can be overwritten
+        }
+    }
+
+    /**
+     * @return true if there is a checkpoint to revert.
+     */
+    boolean hasCheckpoint() {
+        return numOfCheckpoints > 1;
+    }
+
+    /**
+     * Discard the latest checkpoint.
+     * The caller should then revert the records with {@link UndoLog#removeLast()}
+     * while {@link UndoLog#hasRecordsAfterCheckpoint()}.
+     */
+    void popCheckpoint() {
+        numOfCheckpoints--;
+    }
+
+    /**
+     * @return true if there are records written after the latest checkpoint.
+     */
+    boolean hasRecordsAfterCheckpoint() {
+        return nextRecord > checkpoints[(firstCheckpoint + numOfCheckpoints - 1) & (checkpoints.length - 1)];
+    }
+
+    /**
+     * @return the cell index of the latest record.
+     */
+    int lastCell() {
+        return cells[(int) ((nextRecord - 1) & (cells.length - 1))];
+    }
+
+    /**
+     * Remove the latest record.
+     *
+     * @return the code the cell held before it was overwritten.
+     */
+    byte removeLast() {
+        nextRecord--;
+        return previousCells[(int) (nextRecord & (cells.length - 1))];
+    }
+
+    private void growRecords() {
+        final int[] newCells = new int[cells.length * 2];
+        final byte[] newPreviousCells = new byte[cells.length * 2];
+        for (long i = firstRecord; i < nextRecord; i++) {
+            newCells[(int) (i & (newCells.length - 1))] = cells[(int) (i & (cells.length - 1))];
+            newPreviousCells[(int) (i & (newCells.length - 1))] = previousCells[(int) (i & (cells.length - 1))];
+        }
+        cells = newCells;
+        previousCells = newPreviousCells;
+    }
+
+    private void growCheckpoints() {
+        final long[] newCheckpoints = new long[checkpoints.length * 2];
+        for (int i = 0; i < numOfCheckpoints; i++) {
+            newCheckpoints[i] = checkpoints[(firstCheckpoint + i) & (checkpoints.length - 1)];
+        }
+        checkpoints = newCheckpoints;
+        firstCheckpoint = 0;
+    }
+
+    private static int ceilingPowerOfTwo(long value) {
+        return Integer.highestOneBit((int) Math.max(1, value * 2 - 1));
+    }
+}
@@ -0,0 +1,215 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A bidirectional breadth-first search over push-states.
+ * <p>
+ * The forward search pushes boxes from the initial state as usual. The backward search starts from every goal state,
+ * i.e., all boxes on the destinations with the player in any region next to a box, and pulls boxes:
+ * a player next to a box steps away from it and drags it along, which undoes a push.
+ * Both searches normalize the player region the same way, so a state found by both is one push-state,
+ * and each search looks up every new state among the states found by the other one.
+ * <p>
+ * The searches advance one whole layer of pushes at a time, always the side with the smaller layer,
+ * so neither frontier grows much deeper than needed. When a layer meets the other side, the best meeting of the layer
+ * has the fewest pushes, since every shorter solution would have met in an earlier layer.
+ * On levels where both directions branch alike, each side only searches about half the depth.
+ */
+final class BidirectionalSearch {
+    private final Board board;
+    private final Expander expander;
+    private final Reachability reachability;
+    private final boolean[] occupied;
+    private final int[] candidates;
+    private long explored = 0;
+    private long deadline;
+    private long maxNodes;
+
+    /**
+     * @param board the board.
+     */
+    BidirectionalSearch(@NotNull Board board) {
+        this.board = board;
+        this.expander = new Expander(board, false);
+        this.reachability = new Reachability(board);
+        this.occupied = new boolean[board.floorCount];
+        this.candidates = new int[board.floorCount * Board.DIRECTIONS];
+    }
+
+    /**
+     * Search for a solution.
+     *
+     * @param root     the initial node.
+     * @param goals    the sorted floor cells of the destinations, one for each box.
+     * @param deadline the {@link System#nanoTime()} at which to give up.
+     * @param maxNodes the maximum number of nodes to keep on both sides together.
+     * @return the goal node, whose parents lead back to the root by pushes, or null if there is none.
+     * @throws TimeoutException     if the deadline passes first.
+     * @throws MemoryLimitException if more nodes would have to be kept first.
+     */
+    @Nullable Node search(@NotNull Node root, int @NotNull [] goals, long deadline, long maxNodes)
+            throws TimeoutException, MemoryLimitException {
+        if (root.estimate == 0) {
+            return root;
+        }
+        this.deadline = deadline;
+        this.maxNodes = maxNodes;
+        final Map<Node, Node> forward = new HashMap<>();
+        final Map<Node, Node> backward = new HashMap<>();
+        List<Node> forwardLayer = List.of(root);
+        forward.put(root, root);
+        List<Node> backwardLayer = goalStates(goals, backward);
+        while (!forwardLayer.isEmpty() && !backwardLayer.isEmpty()) {
+            final Node[] meeting = new Node[2];
+            if (forwardLayer.size() <= backwardLayer.size()) {
+                forwardLayer = nextLayer(forwardLayer, true, forward, backward, meeting);
+            } else {
+                backwardLayer = nextLayer(backwardLayer, false, backward, forward, meeting);
+            }
+            if (meeting[0] != null) {
+                return join(meeting[0], meeting[1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of nodes expanded so far on both sides.
+     */
+    long getExplored() {
+        return explored;
+    }
+
+    /**
+     * Create the goal states, with the boxes on the destinations and the player in each region next to a box.
+     */
+    private List<Node> goalStates(int[] goals, Map<Node, Node> seen) {
+        long boxKey = 0;
+        for (int goal : goals) {
+            boxKey ^= board.boxKeys[goal];
+        }
+        final List<Node> result = new ArrayList<>();
+        mark(goals, true);
+        for (int goal : goals) {
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                final int next = board.neighbor(goal, direction);
+                if (next < 0 || occupied[next]) {
+                    continue;
+                }
+                final int player = reachability.fill(next, occupied);
+                final Node node = new Node(goals, boxKey, player, board.playerKeys[player], 0, 0, null, -1, -1, null);
+                if (seen.putIfAbsent(node, node) == null) {
+                    result.add(node);
+                }
+            }
+        }
+        mark(goals, false);
+        return result;
+    }
+
+    /**
+     * Expand a whole layer of one side, recording the best meeting with the other side.
+     *
+     * @param meeting receives the forward and the backward node of the best meeting, if any.
+     * @return the next layer.
+     */
+    private List<Node> nextLayer(List<Node> layer, boolean forwards, Map<Node, Node> seen, Map<Node, Node> other,
+                                 Node[] meeting) throws TimeoutException, MemoryLimitException {
+        final List<Node> next = new ArrayList<>();
+        final List<Node> children = new ArrayList<>();
+        int best = Integer.MAX_VALUE;
+        for (Node node : layer) {
+            explored++;
+            if (Deadline.hasPassed(deadline)) {
+                throw new TimeoutException();
+            }
+            children.clear();
+            if (forwards) {
+                expander.expand(node, children);
+            } else {
+                pull(node, children);
+            }
+            for (Node child : children) {
+                if (seen.putIfAbsent(child, child) != null) {
+                    continue;
+                }
+                next.add(child);
+                final Node match = other.get(child);
+                if (match != null && child.pushes + match.pushes < best) {
+                    best = child.pushes + match.pushes;
+                    meeting[0] = forwards ? child : match;
+                    meeting[1] = forwards ? match : child;
+                }
+            }
+            if (seen.size() + other.size() > maxNodes) {
+                throw new MemoryLimitException();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Generate every push-state from which one push leads to the node, by pulling each box the player can get next to
+     * with a free cell behind the player.
+     */
+    private void pull(Node node, List<Node> children) {
+        mark(node.boxes, true);
+        reachability.fill(node.player, occupied);
+        int numOfCandidates = 0;
+        for (int box : node.boxes) {
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                final int player = board.neighbor(box, direction);
+                if (player < 0 || occupied[player] || !reachability.isReachable(player)) {
+                    continue;
+                }
+                final int behind = board.neighbor(player, direction);
+                if (behind >= 0 && !occupied[behind]) {
+                    candidates[numOfCandidates++] = box * Board.DIRECTIONS + direction;
+                }
+            }
+        }
+        for (int i = 0; i < numOfCandidates; i++) {
+            final int box = candidates[i] / Board.DIRECTIONS;
+            final int direction = candidates[i] % Board.DIRECTIONS;
+            final int target = board.neighbor(box, direction);
+            occupied[box] = false;
+            occupied[target] = true;
+            final int player = reachability.fill(board.neighbor(target, direction), occupied);
+            occupied[target] = false;
+            occupied[box] = true;
+            final long boxKey = node.boxKey ^ board.boxKeys[box] ^ board.boxKeys[target];
+            children.add(new Node(Node.pushed(node.boxes, box, target), boxKey, player, board.playerKeys[player],
+                    node.pushes + 1, 0, node, box, direction, null));
+        }
+        mark(node.boxes, false);
+    }
+
+    /**
+     * Continue the forward path of a meeting with the pulls of the backward path undone as pushes.
+     * A pull of a box from a cell in a direction is undone by pushing the box back from the cell it was pulled to.
+     */
+    private Node join(Node forward, Node backward) {
+        Node result = forward;
+        for (Node node = backward; node.parent != null; node = node.parent) {
+            final int pulledTo = board.neighbor(node.pushedBox, node.direction);
+            final Node state = node.parent;
+            result = new Node(state.boxes, state.boxKey, state.player, board.playerKeys[state.player],
+                    result.pushes + 1, 0, result, pulledTo, Board.opposite(node.direction), null);
+        }
+        return result;
+    }
+
+    private void mark(int[] boxes, boolean value) {
+        for (int box : boxes) {
+            occupied[box] = value;
+        }
+    }
+}
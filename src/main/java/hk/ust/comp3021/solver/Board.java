@@ -0,0 +1,320 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Direction;
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.entities.Box;
+import hk.ust.comp3021.entities.Entity;
+import hk.ust.comp3021.entities.Player;
+import hk.ust.comp3021.entities.Wall;
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.GoalRoom;
+import hk.ust.comp3021.game.Position;
+import hk.ust.comp3021.game.PushDistances;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * The static layout of a game as seen by the solver.
+ * Only floor cells, i.e., cells that are neither walls nor outside the map, take part in the search,
+ * so they are numbered densely from 0 in row-major order, and the neighbors of each floor cell are kept in a table.
+ * The initial placement of players and boxes is recorded with floor numbers as well.
+ */
+final class Board {
+    /**
+     * The number of directions, indexed by {@link Direction#ordinal()}.
+     */
+    static final int DIRECTIONS = 4;
+    /**
+     * The push distance of a cell from which a box can never reach a destination.
+     */
+    static final int UNREACHABLE = PushDistances.UNREACHABLE;
+
+    private static final Direction[] DIRECTION_VALUES = Direction.values();
+
+    final int width;
+    final int height;
+    final int floorCount;
+    /**
+     * The map cell, i.e., {@code y * width + x}, of each floor cell.
+     */
+    final int[] cellOf;
+    /**
+     * The neighbor of each floor cell in each direction at {@code floor * DIRECTIONS + direction},
+     * -1 if the neighbor is not a floor cell.
+     */
+    final int[] neighbors;
+    final boolean[] goals;
+    /**
+     * The player of each floor cell at the start, indexed by floor cell, -1 if there is no player.
+     */
+    final int[] initialPlayers;
+    /**
+     * The owner of the box on each floor cell at the start, indexed by floor cell, -1 if there is no box.
+     */
+    final int[] initialBoxes;
+    /**
+     * The push distances of the map, whose cells are {@code y * width + x} like {@link Board#cellOf}.
+     */
+    final PushDistances distances;
+    /**
+     * The minimum number of pushes needed to move a box from each floor cell onto any destination,
+     * {@link Board#UNREACHABLE} if the box could never get there.
+     */
+    final int[] pushDistances;
+    /**
+     * Random keys of a box and of the normalized player on each floor cell.
+     * The key of a push-state is the exclusive or of the keys of its boxes and its player,
+     * so it can be updated by a push in constant time.
+     */
+    final long[] boxKeys;
+    final long[] playerKeys;
+    /**
+     * The goal room entered by a box pushed onto each floor cell in each direction,
+     * at {@code floor * DIRECTIONS + direction}, -1 if the cell is not the entrance of a room in that direction.
+     * See {@link GoalRoom}.
+     */
+    final int[] roomEntered;
+    /**
+     * Whether each floor cell belongs to each goal room, at {@code [room][floor]}.
+     */
+    final boolean[][] roomCells;
+    /**
+     * The destinations of each goal room as floor cells, in the order to fill them.
+     */
+    final int[][] roomGoals;
+    /**
+     * The direction ordinals of the pushes moving a box from the entrance of each goal room onto each of its
+     * destinations, at {@code [room][goal]}.
+     */
+    final int[][][] roomRoutes;
+
+    private Board(int width, int height, @NotNull Set<Position> destinations, @NotNull PushDistances distances,
+                  @NotNull List<GoalRoom> rooms, @NotNull Function<Position, @Nullable Entity> entityAt) {
+        this.width = width;
+        this.height = height;
+        final long cellCount = (long) width * height;
+        if (cellCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The map is too large: " + width + "x" + height);
+        }
+        final int[] floorOf = new int[(int) cellCount];
+        final List<Entity> floorEntities = new ArrayList<>();
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final Entity entity = entityAt.apply(Position.of(x, y));
+                if (entity == null || entity instanceof Wall) {
+                    floorOf[y * width + x] = -1;
+                } else {
+                    floorOf[y * width + x] = count++;
+                    floorEntities.add(entity);
+                }
+            }
+        }
+        this.floorCount = count;
+        this.cellOf = new int[count];
+        this.neighbors = new int[count * DIRECTIONS];
+        this.goals = new boolean[count];
+        this.initialPlayers = new int[count];
+        this.initialBoxes = new int[count];
+        for (int cell = 0; cell < floorOf.length; cell++) {
+            final int floor = floorOf[cell];
+            if (floor < 0) {
+                continue;
+            }
+            cellOf[floor] = cell;
+            final int x = cell % width;
+            final int y = cell / width;
+            for (Direction direction : DIRECTION_VALUES) {
+                final int nx = x + direction.getDx();
+                final int ny = y + direction.getDy();
+                final boolean inside = nx >= 0 && nx < width && ny >= 0 && ny < height;
+                neighbors[floor * DIRECTIONS + direction.ordinal()] = inside ? floorOf[ny * width + nx] : -1;
+            }
+            final Entity entity = floorEntities.get(floor);
+            initialPlayers[floor] = (entity instanceof Player player) ? player.getId() : -1;
+            initialBoxes[floor] = (entity instanceof Box box) ? box.getPlayerId() : -1;
+        }
+        for (Position destination : destinations) {
+            final boolean inside = destination.x() >= 0 && destination.x() < width
+                    && destination.y() >= 0 && destination.y() < height;
+            if (inside && floorOf[destination.y() * width + destination.x()] >= 0) {
+                goals[floorOf[destination.y() * width + destination.x()]] = true;
+            }
+        }
+        this.distances = distances;
+        this.pushDistances = new int[count];
+        for (int floor = 0; floor < count; floor++) {
+            pushDistances[floor] = distances.getNearestDistance(cellOf[floor]);
+        }
+        // a fixed seed keeps the keys, and therefore the search order, the same across runs
+        final SplittableRandom random = new SplittableRandom(0x5EED_50C0BA4L);
+        this.boxKeys = random.longs(count).toArray();
+        this.playerKeys = random.longs(count).toArray();
+
+        this.roomEntered = new int[count * DIRECTIONS];
+        Arrays.fill(roomEntered, -1);
+        this.roomCells = new boolean[rooms.size()][count];
+        this.roomGoals = new int[rooms.size()][];
+        this.roomRoutes = new int[rooms.size()][][];
+        for (int room = 0; room < rooms.size(); room++) {
+            final GoalRoom goalRoom = rooms.get(room);
+            final int entrance = floorOf[goalRoom.entrance().y() * width + goalRoom.entrance().x()];
+            roomEntered[entrance * DIRECTIONS + goalRoom.direction().ordinal()] = room;
+            for (Position position : goalRoom.cells()) {
+                roomCells[room][floorOf[position.y() * width + position.x()]] = true;
+            }
+            roomGoals[room] = goalRoom.fillOrder().stream()
+                    .mapToInt(position -> floorOf[position.y() * width + position.x()])
+                    .toArray();
+            roomRoutes[room] = goalRoom.routes().stream()
+                    .map(route -> route.stream().mapToInt(Direction::ordinal).toArray())
+                    .toArray(int[][]::new);
+        }
+    }
+
+    /**
+     * Share every table of a layout, with another placement of players and boxes.
+     */
+    private Board(Board layout, int[] initialPlayers, int[] initialBoxes) {
+        this.width = layout.width;
+        this.height = layout.height;
+        this.floorCount = layout.floorCount;
+        this.cellOf = layout.cellOf;
+        this.neighbors = layout.neighbors;
+        this.goals = layout.goals;
+        this.initialPlayers = initialPlayers;
+        this.initialBoxes = initialBoxes;
+        this.distances = layout.distances;
+        this.pushDistances = layout.pushDistances;
+        this.boxKeys = layout.boxKeys;
+        this.playerKeys = layout.playerKeys;
+        this.roomEntered = layout.roomEntered;
+        this.roomCells = layout.roomCells;
+        this.roomGoals = layout.roomGoals;
+        this.roomRoutes = layout.roomRoutes;
+    }
+
+    /**
+     * @param map the game map.
+     * @return the layout of the map with its initial placement of players and boxes.
+     */
+    static @NotNull Board of(@NotNull GameMap map) {
+        return new Board(map.getMaxWidth(), map.getMaxHeight(), map.getDestinations(), map.getPushDistances(),
+                map.getGoalRooms(), map::getEntity);
+    }
+
+    /**
+     * @param state a game state.
+     * @return the layout of the map with the current placement of players and boxes of the game state.
+     */
+    static @NotNull Board of(@NotNull GameState state) {
+        return new Board(state.getMapMaxWidth(), state.getMapMaxHeight(), state.getDestinations(),
+                state.getPushDistances(), state.getGoalRooms(), state::getEntity);
+    }
+
+    /**
+     * Read the placement of players and boxes of a game state on this layout, which only visits the floor cells
+     * and shares all tables of this board, so it is much cheaper than {@link Board#of(GameState)}.
+     *
+     * @param state a game state whose walls are those of this board.
+     * @return this layout with the current placement of players and boxes of the game state.
+     */
+    @NotNull Board withPlacement(@NotNull GameState state) {
+        final int[] players = new int[floorCount];
+        final int[] boxes = new int[floorCount];
+        for (int floor = 0; floor < floorCount; floor++) {
+            final Entity entity = state.getEntity(Position.of(cellOf[floor] % width, cellOf[floor] / width));
+            players[floor] = (entity instanceof Player player) ? player.getId() : -1;
+            boxes[floor] = (entity instanceof Box box) ? box.getPlayerId() : -1;
+        }
+        return new Board(this, players, boxes);
+    }
+
+    /**
+     * @param floor     a floor cell.
+     * @param direction a direction ordinal.
+     * @return the neighboring floor cell, or -1 if there is none.
+     */
+    int neighbor(int floor, int direction) {
+        return neighbors[floor * DIRECTIONS + direction];
+    }
+
+    /**
+     * @param floor     a floor cell.
+     * @param direction a direction ordinal.
+     * @return true if the neighbors of the floor cell across the direction are not floor cells,
+     * the same as {@link GameMap#isTunnel(Position, Direction)}.
+     */
+    boolean isTunnel(int floor, int direction) {
+        final int across = (direction < 2) ? 2 : 0; // UP and DOWN are across LEFT and RIGHT, and vice versa
+        return neighbor(floor, across) < 0 && neighbor(floor, across + 1) < 0;
+    }
+
+    /**
+     * @param direction a direction ordinal.
+     * @return the ordinal of the opposite direction.
+     */
+    static int opposite(int direction) {
+        // UP and DOWN, LEFT and RIGHT are declared next to each other
+        return direction ^ 1;
+    }
+
+    /**
+     * @param direction a direction ordinal.
+     * @return the direction.
+     */
+    static @NotNull Direction direction(int direction) {
+        return DIRECTION_VALUES[direction];
+    }
+
+    /**
+     * Append the moves of a shortest walk between two floor cells without pushing any box.
+     * The target must be reachable.
+     *
+     * @param moves    the list to append the moves to.
+     * @param playerId the id of the walking player.
+     * @param from     the floor cell the player stands on.
+     * @param to       the floor cell to walk to.
+     * @param occupied whether each floor cell is blocked, by a box or another player.
+     * @param previous a buffer of {@link Board#floorCount} entries.
+     */
+    void appendWalk(@NotNull List<Move> moves, int playerId, int from, int to, boolean @NotNull [] occupied,
+                    int @NotNull [] previous) {
+        Arrays.fill(previous, -1);
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        previous[from] = from;
+        queue.add(from);
+        while (!queue.isEmpty() && previous[to] < 0) {
+            final int floor = queue.poll();
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                final int next = neighbor(floor, direction);
+                if (next >= 0 && previous[next] < 0 && !occupied[next]) {
+                    previous[next] = floor;
+                    queue.add(next);
+                }
+            }
+        }
+        final List<Move> walk = new ArrayList<>();
+        for (int floor = to; floor != from; floor = previous[floor]) {
+            final int before = previous[floor];
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                if (neighbor(before, direction) == floor) {
+                    walk.add(direction(direction).toMove(playerId));
+                    break;
+                }
+            }
+        }
+        Collections.reverse(walk);
+        moves.addAll(walk);
+    }
+}
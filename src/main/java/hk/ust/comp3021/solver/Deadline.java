@@ -0,0 +1,40 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * The time budget of a search, given as the {@link System#nanoTime()} at which to give up.
+ * <p>
+ * Searches check it before every expansion. Reading the clock takes tens of nanoseconds, while an expansion floods
+ * the board for each push and can take milliseconds on large maps, so checking only every so many expansions
+ * would overrun small budgets by seconds.
+ */
+final class Deadline {
+
+    private Deadline() {
+    }
+
+    /**
+     * @param budget the time budget, starting now.
+     * @return the {@link System#nanoTime()} at which the budget runs out, saturated for budgets too long to add.
+     */
+    static long after(@NotNull Duration budget) {
+        long nanos;
+        try {
+            nanos = Math.min(budget.toNanos(), Long.MAX_VALUE / 2);
+        } catch (ArithmeticException e) {
+            nanos = Long.MAX_VALUE / 2;
+        }
+        return System.nanoTime() + nanos;
+    }
+
+    /**
+     * @param deadline the {@link System#nanoTime()} at which to give up.
+     * @return whether the deadline has passed.
+     */
+    static boolean hasPassed(long deadline) {
+        return System.nanoTime() - deadline >= 0;
+    }
+}
@@ -0,0 +1,227 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.PushDistances;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the successors of push-states.
+ * An expander owns the buffers used while expanding, so each searching thread needs its own.
+ * <p>
+ * With macro moves, a push is followed by the pushes it forces, and the successor is the state after all of them:
+ * <li>
+ * A box pushed along a tunnel, see {@link Board#isTunnel(int, int)}, by a player standing in the tunnel too,
+ * is pushed on until it leaves the tunnel, reaches a destination, or is blocked.
+ * The player could only push it on or walk back, leaving the tunnel blocked.
+ * </li>
+ * <li>
+ * A box pushed onto the entrance of a goal room that holds no boxes except on the destinations filled before
+ * is pushed onto the next destination in the fill order of the room, see {@link hk.ust.comp3021.game.GoalRoom}.
+ * </li>
+ * Each macro move counts all its pushes, so the number of pushes stays exact, but the pushes it skips are never
+ * tried on their own, so the search is smaller and the solution found may take a few more pushes than the minimum.
+ */
+final class Expander {
+    /**
+     * The largest number of boxes for which the estimate is a minimum-cost matching between boxes and destinations.
+     * With more boxes, the matching costs more than it saves, and the estimate is the sum of the nearest distances.
+     */
+    static final int MATCHING_LIMIT = 32;
+
+    private final Board board;
+    private final Reachability reachability;
+    private final boolean[] occupied;
+    private final int[] candidates;
+    private final int[] boxCells;
+    private final PushDistances.Matching matching;
+    private final boolean macroMoves;
+    /**
+     * The pushes of the macro move being built after its first push, see {@link Expander#extend(int[], int, int)}.
+     */
+    private int[] route;
+    private int routeLength = 0;
+
+    /**
+     * @param board      the board.
+     * @param macroMoves whether pushes are followed by the pushes they force.
+     */
+    Expander(@NotNull Board board, boolean macroMoves) {
+        this.board = board;
+        this.macroMoves = macroMoves;
+        this.route = new int[16];
+        this.reachability = new Reachability(board);
+        this.occupied = new boolean[board.floorCount];
+        this.candidates = new int[board.floorCount * Board.DIRECTIONS];
+        this.boxCells = new int[MATCHING_LIMIT];
+        this.matching = board.distances.newMatching();
+    }
+
+    /**
+     * Create the initial push-state.
+     *
+     * @param boxes  the sorted floor cells of the boxes.
+     * @param player the floor cell of the player.
+     * @return the node, or null if a box can never reach a destination.
+     */
+    Node root(int @NotNull [] boxes, int player) {
+        int estimate = 0;
+        long boxKey = 0;
+        for (int box : boxes) {
+            if (board.pushDistances[box] == Board.UNREACHABLE) {
+                return null;
+            }
+            estimate += board.pushDistances[box];
+            boxKey ^= board.boxKeys[box];
+        }
+        if (boxes.length <= MATCHING_LIMIT) {
+            estimate = matching(boxes);
+            if (estimate == Board.UNREACHABLE) {
+                return null;
+            }
+        }
+        mark(boxes, true);
+        final int normalized = reachability.fill(player, occupied);
+        mark(boxes, false);
+        return new Node(boxes, boxKey, normalized, board.playerKeys[normalized], 0, estimate, null, -1, -1, null);
+    }
+
+    /**
+     * Generate every push-state reachable from a node by one push, or one macro move if enabled,
+     * except those pushing a box onto a cell from which no destination can be reached,
+     * or leaving boxes that cannot all reach different destinations.
+     *
+     * @param node     the node to expand.
+     * @param children the list to add the successors to.
+     */
+    void expand(@NotNull Node node, @NotNull List<Node> children) {
+        // collect the pushes first, since each child fills the reachable region again
+        mark(node.boxes, true);
+        reachability.fill(node.player, occupied);
+        int numOfCandidates = 0;
+        for (int box : node.boxes) {
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                final int behind = board.neighbor(box, Board.opposite(direction));
+                final int target = board.neighbor(box, direction);
+                if (behind >= 0 && target >= 0 && !occupied[target] && reachability.isReachable(behind)
+                        && board.pushDistances[target] != Board.UNREACHABLE) {
+                    candidates[numOfCandidates++] = box * Board.DIRECTIONS + direction;
+                }
+            }
+        }
+        for (int i = 0; i < numOfCandidates; i++) {
+            final int box = candidates[i] / Board.DIRECTIONS;
+            final int direction = candidates[i] % Board.DIRECTIONS;
+            final int target = macroMoves ? extend(node.boxes, box, direction) : board.neighbor(box, direction);
+            final int lastDirection = (routeLength > 0) ? route[routeLength - 1] : direction;
+            occupied[box] = false;
+            occupied[target] = true;
+            final int player = reachability.fill(board.neighbor(target, Board.opposite(lastDirection)), occupied);
+            occupied[target] = false;
+            occupied[box] = true;
+
+            final int[] boxes = Node.pushed(node.boxes, box, target);
+            final int estimate = (boxes.length <= MATCHING_LIMIT)
+                    ? matching(boxes)
+                    : node.estimate - board.pushDistances[box] + board.pushDistances[target];
+            if (estimate == Board.UNREACHABLE) {
+                continue;
+            }
+            final long boxKey = node.boxKey ^ board.boxKeys[box] ^ board.boxKeys[target];
+            final int[] macro = (routeLength > 0) ? Arrays.copyOf(route, routeLength) : null;
+            children.add(new Node(boxes, boxKey, player, board.playerKeys[player],
+                    node.pushes + 1 + routeLength, estimate, node, box, direction, macro));
+        }
+        mark(node.boxes, false);
+    }
+
+    /**
+     * Follow a push with the pushes it forces, see {@link Expander}, and keep them in {@link Expander#route}.
+     * The boxes of the node being expanded must be marked in {@link Expander#occupied}.
+     *
+     * @param boxes     the floor cells of the boxes of the node being expanded.
+     * @param box       the floor cell of the pushed box.
+     * @param direction the direction ordinal of the push.
+     * @return the floor cell of the box after all the pushes.
+     */
+    private int extend(int[] boxes, int box, int direction) {
+        routeLength = 0;
+        int behind = box;
+        int current = board.neighbor(box, direction);
+        int last = direction;
+        while (true) {
+            final int room = board.roomEntered[current * Board.DIRECTIONS + last];
+            if (room >= 0) {
+                final int filled = filledGoals(room, boxes, box);
+                if (filled >= 0) {
+                    for (int push : board.roomRoutes[room][filled]) {
+                        append(push);
+                    }
+                    return board.roomGoals[room][filled];
+                }
+            }
+            if (board.goals[current] || !board.isTunnel(behind, last) || !board.isTunnel(current, last)) {
+                return current;
+            }
+            final int next = board.neighbor(current, last);
+            if (next < 0 || occupied[next] || board.pushDistances[next] == Board.UNREACHABLE) {
+                return current;
+            }
+            append(last);
+            behind = current;
+            current = next;
+        }
+    }
+
+    /**
+     * @param room  a goal room.
+     * @param boxes the floor cells of the boxes of the node being expanded.
+     * @param box   the floor cell of the box entering the room, which is still marked as occupied.
+     * @return the number of destinations of the room filled in order, or -1 if other cells of the room hold boxes
+     * or all destinations are filled.
+     */
+    private int filledGoals(int room, int[] boxes, int box) {
+        final int[] goals = board.roomGoals[room];
+        int filled = 0;
+        while (filled < goals.length && occupied[goals[filled]]) {
+            filled++;
+        }
+        if (filled == goals.length) {
+            return -1;
+        }
+        final boolean[] cells = board.roomCells[room];
+        int inside = 0;
+        for (int other : boxes) {
+            if (other != box && cells[other]) {
+                inside++;
+            }
+        }
+        return (inside == filled) ? filled : -1;
+    }
+
+    private void append(int push) {
+        if (routeLength == route.length) {
+            route = Arrays.copyOf(route, routeLength * 2);
+        }
+        route[routeLength++] = push;
+    }
+
+    /**
+     * @param boxes the floor cells of at most {@link Expander#MATCHING_LIMIT} boxes.
+     * @return the minimum total pushes to move the boxes onto different destinations, see
+     * {@link PushDistances.Matching#lowerBound(int[], int)}.
+     */
+    private int matching(int[] boxes) {
+        for (int i = 0; i < boxes.length; i++) {
+            boxCells[i] = board.cellOf[boxes[i]];
+        }
+        return matching.lowerBound(boxCells, boxes.length);
+    }
+
+    private void mark(int[] boxes, boolean value) {
+        for (int box : boxes) {
+            occupied[box] = value;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Direction;
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.game.GameState;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Suggests the next move of a player in a running game.
+ * <p>
+ * A hint solves the game from the current state with {@link Solver} and keeps the solution as a plan.
+ * Each hint remembers, for the next move of each player in the plan, the state hash the game will have
+ * once that move is made, see {@link GameState#getStateHashAfter(int, Direction)}, so as long as the players
+ * follow the plan, in any order between players, later hints are read off it in constant time per player.
+ * The game is only solved again when it leaves the plan.
+ * <p>
+ * The budget of a hint covers all of its work, including reading the game into the solver.
+ * The solver is kept while the game stays in the same state, so when it runs out of time,
+ * asking again continues its search instead of starting over, see {@link Solver}.
+ * Meanwhile, the hint falls back to the push that brings the boxes closest to the destinations
+ * by the solver's estimate.
+ */
+public class HintEngine {
+    private final List<Move> plan = new ArrayList<>();
+    /**
+     * The state hash when the last hint was given.
+     */
+    private long hintedHash = 0;
+    /**
+     * The index in the plan of the next move of each player, by the state hash after the move is made
+     * from the state of the last hint.
+     */
+    private final Map<Long, Integer> nextMoves = new HashMap<>();
+    /**
+     * The game whose placement the board and the solver were made for, and its state hash at that time.
+     */
+    private GameState solverState;
+    private long solverHash = 0;
+    private Board board;
+    private Solver solver;
+
+    /**
+     * Suggest the next move of a player.
+     * On maps with several players, the move may have to wait until other players have made theirs.
+     *
+     * @param state    The current state of the game, which is only read.
+     * @param playerId The id of the player to suggest a move for.
+     * @param budget   The maximum wall time to spend on searching.
+     * @return The suggested move, or {@link Optional#empty()} if the game is won or cannot be won,
+     * or the player has nothing left to do.
+     */
+    public @NotNull Optional<Move> hint(@NotNull GameState state, int playerId, @NotNull Duration budget) {
+        final long deadline = Deadline.after(budget);
+        if (state.isWin()) {
+            return Optional.empty();
+        }
+        final long hash = state.getStateHash();
+        if (!plan.isEmpty() && hash != hintedHash) {
+            final Integer made = nextMoves.get(hash);
+            if (made != null) { // a player has followed the plan
+                plan.remove((int) made);
+            } else {
+                plan.clear();
+            }
+        }
+        if (!plan.isEmpty() && state.getStateHashAfter(plan.get(0).getInitiator(), plan.get(0).getDirection()) == hash) {
+            plan.clear(); // the players have followed the plan out of order and it no longer fits the game
+        }
+        nextMoves.clear();
+        if (plan.isEmpty()) {
+            final SolverResult result = solverFor(state, hash).solveUntil(deadline, 1);
+            if (result instanceof SolverResult.Timeout) {
+                return fallback(board, playerId);
+            }
+            if (!(result instanceof SolverResult.Solved solved) || solved.getMoves().isEmpty()) {
+                return Optional.empty();
+            }
+            plan.addAll(solved.getMoves());
+        }
+        hintedHash = hash;
+        final Set<Integer> players = new HashSet<>();
+        Move suggested = null;
+        for (int i = 0; i < plan.size(); i++) {
+            final Move move = plan.get(i);
+            if (players.add(move.getInitiator())) {
+                nextMoves.put(state.getStateHashAfter(move.getInitiator(), move.getDirection()), i);
+                if (move.getInitiator() == playerId) {
+                    suggested = move;
+                }
+            }
+        }
+        return Optional.ofNullable(suggested);
+    }
+
+    /**
+     * @return the solver of the current placement of the game, which is kept while the game stays in the same state.
+     */
+    private Solver solverFor(GameState state, long hash) {
+        if (solver != null && state == solverState && hash == solverHash) {
+            return solver;
+        }
+        board = (board != null && state == solverState) ? board.withPlacement(state) : Board.of(state);
+        solver = new Solver(board);
+        solverState = state;
+        solverHash = hash;
+        return solver;
+    }
+
+    /**
+     * Find the push of the player after which the boxes have the lowest estimate,
+     * and return the first move towards it.
+     */
+    private static Optional<Move> fallback(Board board, int playerId) {
+        final boolean[] occupied = new boolean[board.floorCount];
+        final List<Integer> boxes = new ArrayList<>();
+        int start = -1;
+        for (int floor = 0; floor < board.floorCount; floor++) {
+            occupied[floor] = board.initialBoxes[floor] >= 0 || board.initialPlayers[floor] >= 0;
+            if (board.initialBoxes[floor] >= 0) {
+                boxes.add(floor);
+            }
+            if (board.initialPlayers[floor] == playerId) {
+                start = floor;
+            }
+        }
+        if (start < 0) {
+            return Optional.empty();
+        }
+        occupied[start] = false;
+        final Reachability reachability = new Reachability(board);
+        reachability.fill(start, occupied);
+        final int[] boxCells = new int[boxes.size()];
+        for (int i = 0; i < boxCells.length; i++) {
+            boxCells[i] = board.cellOf[boxes.get(i)];
+        }
+        int bestEstimate = Board.UNREACHABLE;
+        int bestBehind = -1;
+        int bestDirection = -1;
+        for (int i = 0; i < boxCells.length; i++) {
+            final int box = boxes.get(i);
+            if (board.initialBoxes[box] != playerId) {
+                continue;
+            }
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                final int behind = board.neighbor(box, Board.opposite(direction));
+                final int target = board.neighbor(box, direction);
+                if (behind < 0 || target < 0 || occupied[target] || !reachability.isReachable(behind)
+                        || board.pushDistances[target] == Board.UNREACHABLE) {
+                    continue;
+                }
+                boxCells[i] = board.cellOf[target];
+                final int estimate = estimate(board, boxCells);
+                boxCells[i] = board.cellOf[box];
+                if (estimate < bestEstimate) {
+                    bestEstimate = estimate;
+                    bestBehind = behind;
+                    bestDirection = direction;
+                }
+            }
+        }
+        if (bestBehind < 0) {
+            return Optional.empty();
+        }
+        if (bestBehind == start) {
+            return Optional.of(Board.direction(bestDirection).toMove(playerId));
+        }
+        final List<Move> walk = new ArrayList<>();
+        board.appendWalk(walk, playerId, start, bestBehind, occupied, new int[board.floorCount]);
+        return Optional.of(walk.get(0));
+    }
+
+    private static int estimate(Board board, int[] boxCells) {
+        if (boxCells.length <= Expander.MATCHING_LIMIT) {
+            return board.distances.lowerBound(boxCells, boxCells.length);
+        }
+        int estimate = 0;
+        for (int cell : boxCells) {
+            final int distance = board.distances.getNearestDistance(cell);
+            if (distance == Board.UNREACHABLE) {
+                return Board.UNREACHABLE;
+            }
+            estimate += distance;
+        }
+        return estimate;
+    }
+}
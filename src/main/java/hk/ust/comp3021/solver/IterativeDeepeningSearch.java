@@ -0,0 +1,140 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An iterative-deepening A* search over push-states.
+ * <p>
+ * Each iteration is a depth-first search that cuts off every node whose estimated total number of pushes exceeds
+ * a bound, starting from the estimate of the initial node and raised to the smallest total cut off by the previous
+ * iteration. The estimate never overestimates, so the first solution found has the fewest pushes among the moves
+ * searched, like with A*. The children of a node are searched in the order of their estimates.
+ * <p>
+ * Memory is bounded by the depth of the search plus a fixed-size cache of the nodes visited in the current iteration,
+ * which cuts off nodes already visited with no more pushes, including the cycles of the path.
+ * The cache is direct-mapped and a new node always replaces the old one in its slot,
+ * so a forgotten node is only searched again.
+ */
+final class IterativeDeepeningSearch {
+    /**
+     * The heap taken by one entry of the cache: its key, its pushes and its iteration.
+     */
+    static final int ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    private static final Comparator<Node> BY_ESTIMATE = Comparator.comparingInt(node -> node.estimate);
+
+    private final Expander expander;
+    private final long[] keys;
+    private final int[] pushes;
+    /**
+     * The iteration in which each entry was stored, entries of earlier iterations are ignored.
+     */
+    private final int[] iterations;
+    private final int mask;
+    /**
+     * The children of the node being searched at each depth.
+     */
+    private final List<List<Node>> children = new ArrayList<>();
+    private int iteration = 0;
+    private int nextBound;
+    private long deadline;
+    private long explored = 0;
+
+    /**
+     * @param expander     the expander to generate children with.
+     * @param cacheEntries the number of entries of the cache, rounded down to a power of two.
+     */
+    IterativeDeepeningSearch(@NotNull Expander expander, int cacheEntries) {
+        this.expander = expander;
+        final int capacity = Integer.highestOneBit(Math.max(cacheEntries, 1));
+        this.keys = new long[capacity];
+        this.pushes = new int[capacity];
+        this.iterations = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Search for a solution.
+     *
+     * @param root     the initial node.
+     * @param deadline the {@link System#nanoTime()} at which to give up.
+     * @return the goal node, or null if there is none.
+     * @throws TimeoutException if the deadline passes first.
+     */
+    @Nullable Node search(@NotNull Node root, long deadline) throws TimeoutException {
+        this.deadline = deadline;
+        int bound = root.total();
+        while (true) {
+            iteration++;
+            nextBound = Integer.MAX_VALUE;
+            final Node goal = depthFirst(root, bound, 0);
+            if (goal != null) {
+                return goal;
+            }
+            if (nextBound == Integer.MAX_VALUE) { // nothing was cut off, so every reachable state has been searched
+                return null;
+            }
+            bound = nextBound;
+        }
+    }
+
+    /**
+     * @return the number of nodes expanded so far, counting every expansion of a node searched again.
+     */
+    long getExplored() {
+        return explored;
+    }
+
+    private Node depthFirst(Node node, int bound, int depth) throws TimeoutException {
+        if (node.total() > bound) {
+            nextBound = Math.min(nextBound, node.total());
+            return null;
+        }
+        if (node.estimate == 0) {
+            return node;
+        }
+        if (!visit(node)) {
+            return null;
+        }
+        explored++;
+        if (Deadline.hasPassed(deadline)) {
+            throw new TimeoutException();
+        }
+        if (children.size() == depth) {
+            children.add(new ArrayList<>());
+        }
+        final List<Node> successors = children.get(depth);
+        successors.clear();
+        expander.expand(node, successors);
+        successors.sort(BY_ESTIMATE);
+        for (Node child : successors) {
+            final Node goal = depthFirst(child, bound, depth + 1);
+            if (goal != null) {
+                return goal;
+            }
+        }
+        successors.clear();
+        return null;
+    }
+
+    /**
+     * Record a visit of a node in the cache.
+     *
+     * @return false if the node has been visited in this iteration with no more pushes, i.e., it is searched already.
+     */
+    private boolean visit(Node node) {
+        final int slot = (int) ((node.key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        if (iterations[slot] == iteration && keys[slot] == node.key && pushes[slot] <= node.pushes) {
+            return false;
+        }
+        keys[slot] = node.key;
+        pushes[slot] = node.pushes;
+        iterations[slot] = iteration;
+        return true;
+    }
+}
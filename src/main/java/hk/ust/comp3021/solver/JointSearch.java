@@ -0,0 +1,500 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.entities.Entities;
+import hk.ust.comp3021.game.PushDistances;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An A* search over push-states of several players sharing one area of a map.
+ * <p>
+ * A state is the placement of the boxes with their owners plus the cell of every player.
+ * Every edge is either a push, by a player walking to one of its own boxes around the other players and pushing it,
+ * or a yield, by a player walking out of the way of a push of another player without pushing anything.
+ * Yields cost no push and are first only generated for the players standing in the way of a push,
+ * so players in each other's way are moved only when it matters.
+ * That misses the solutions where a player has to get somewhere before a push of another player closes the way,
+ * so if no solution is found, the search is repeated with every player yielding in every state,
+ * which is slower but finds a solution whenever there is one.
+ * After a push, the pushing player is stored on the smallest cell of its region,
+ * so that pushes only differing by where the player stands afterwards lead to the same state.
+ * The moves of the solution do not walk the player there unless it is in the way of another player.
+ * <p>
+ * The estimate is the same as in the single-player search, see {@link Expander}, so the solution found has the
+ * minimum number of pushes among the solutions made of such pushes and yields.
+ */
+final class JointSearch {
+    /**
+     * Boxes are stored as {@code floor * OWNERS + slot}, where the slot of a box whose owner is not searching
+     * is the number of players, so that such boxes are never pushed.
+     */
+    private static final int OWNERS = Entities.MAX_PLAYERS + 1;
+
+    private final Board board;
+    private final int[] playerIds;
+    private final Reachability reachability;
+    private final Reachability passing;
+    /**
+     * Whether each floor cell holds a box, for the node being expanded.
+     */
+    private final boolean[] boxOccupied;
+    /**
+     * Whether each floor cell holds a box or a player other than the one walking.
+     */
+    private final boolean[] occupied;
+    /**
+     * The slot of the player on each floor cell, -1 if there is none.
+     */
+    private final int[] slotAt;
+    private final int[] boxCells;
+    private final PushDistances.Matching matching;
+    private long explored = 0;
+    private int pushes = -1;
+    /**
+     * Whether every player yields in every state, instead of only the players in the way of a push.
+     */
+    private boolean yieldingAll = false;
+
+    /**
+     * @param board     the board.
+     * @param playerIds the ids of the searching players, indexed by slot.
+     */
+    JointSearch(@NotNull Board board, int @NotNull [] playerIds) {
+        this.board = board;
+        this.playerIds = playerIds;
+        this.reachability = new Reachability(board);
+        this.passing = new Reachability(board);
+        this.boxOccupied = new boolean[board.floorCount];
+        this.occupied = new boolean[board.floorCount];
+        this.slotAt = new int[board.floorCount];
+        Arrays.fill(slotAt, -1);
+        this.boxCells = new int[Expander.MATCHING_LIMIT];
+        this.matching = board.distances.newMatching();
+    }
+
+    /**
+     * Search for a solution.
+     *
+     * @param boxes    the floor cells of the boxes.
+     * @param owners   the owner of each box, as a slot or {@code playerIds.length} if its owner is not searching.
+     * @param players  the floor cell of each player, indexed by slot.
+     * @param deadline the {@link System#nanoTime()} at which to give up.
+     * @param maxNodes the maximum number of nodes to keep.
+     * @return the moves of the solution, or null if there is none.
+     * @throws TimeoutException     if the deadline passes first.
+     * @throws MemoryLimitException if more nodes would have to be kept first.
+     */
+    @Nullable List<Move> search(int @NotNull [] boxes, int @NotNull [] owners, int @NotNull [] players, long deadline,
+                                long maxNodes) throws TimeoutException, MemoryLimitException {
+        final int[] encoded = new int[boxes.length];
+        for (int i = 0; i < boxes.length; i++) {
+            encoded[i] = boxes[i] * OWNERS + owners[i];
+        }
+        Arrays.sort(encoded);
+        final int estimate = estimate(encoded);
+        if (estimate == Board.UNREACHABLE) {
+            return null;
+        }
+        long boxKey = 0;
+        for (int box : encoded) {
+            boxKey ^= boxKey(box);
+        }
+        final JointNode root = new JointNode(encoded, boxKey, players.clone(), 0, estimate, null, -1, -1, -1);
+        JointNode goal = search(root, deadline, maxNodes);
+        if (goal == null) {
+            yieldingAll = true;
+            goal = search(root, deadline, maxNodes);
+        }
+        if (goal == null) {
+            return null;
+        }
+        pushes = goal.pushes;
+        return toMoves(root, goal);
+    }
+
+    /**
+     * @return the first node found with all boxes on destinations, or null if there is none.
+     */
+    private @Nullable JointNode search(JointNode root, long deadline, long maxNodes)
+            throws TimeoutException, MemoryLimitException {
+        // ties are broken towards the nodes closer to the goal, which tend to finish the search sooner
+        final PriorityQueue<JointNode> open = new PriorityQueue<>(
+                Comparator.comparingInt(JointNode::total).thenComparingInt(node -> node.estimate));
+        final Map<JointNode, JointNode> best = new HashMap<>();
+        open.add(root);
+        best.put(root, root);
+        final List<JointNode> children = new ArrayList<>();
+        while (!open.isEmpty()) {
+            if (Deadline.hasPassed(deadline)) {
+                throw new TimeoutException();
+            }
+            if (best.size() > maxNodes) {
+                throw new MemoryLimitException();
+            }
+            final JointNode node = open.poll();
+            if (best.get(node) != node) { // a shorter way to the same state has been found
+                continue;
+            }
+            if (node.estimate == 0) {
+                return node;
+            }
+            explored++;
+
+            children.clear();
+            expand(node, children);
+            for (JointNode child : children) {
+                final JointNode existing = best.get(child);
+                if (existing == null || existing.pushes > child.pushes) {
+                    best.put(child, child);
+                    open.add(child);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of nodes expanded so far.
+     */
+    long getExplored() {
+        return explored;
+    }
+
+    /**
+     * @return the number of pushes of the solution found, -1 if none has been found.
+     */
+    int getPushes() {
+        return pushes;
+    }
+
+    private void expand(JointNode node, List<JointNode> children) {
+        for (int box : node.boxes) {
+            boxOccupied[box / OWNERS] = true;
+        }
+        for (int slot = 0; slot < node.players.length; slot++) {
+            slotAt[node.players[slot]] = slot;
+        }
+        int blockers = 0;
+        for (int slot = 0; slot < node.players.length; slot++) {
+            blockers |= expandPushes(node, slot, children);
+        }
+        for (int slot = 0; slot < node.players.length; slot++) {
+            if (yieldingAll || (blockers & (1 << slot)) != 0) {
+                expandYields(node, slot, children);
+            }
+        }
+        for (int box : node.boxes) {
+            boxOccupied[box / OWNERS] = false;
+        }
+        for (int player : node.players) {
+            slotAt[player] = -1;
+        }
+    }
+
+    /**
+     * Generate the pushes of one player.
+     *
+     * @return the bitmask of the slots of the players in the way of the other pushes of the player.
+     */
+    private int expandPushes(JointNode node, int slot, List<JointNode> children) {
+        blockOthers(node, slot, true);
+        reachability.fill(node.players[slot], occupied);
+        passing.fill(node.players[slot], boxOccupied);
+        final int[] candidates = new int[node.boxes.length * Board.DIRECTIONS];
+        int numOfCandidates = 0;
+        int blockers = 0;
+        for (int encoded : node.boxes) {
+            if (encoded % OWNERS != slot) {
+                continue;
+            }
+            final int box = encoded / OWNERS;
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                final int behind = board.neighbor(box, Board.opposite(direction));
+                final int target = board.neighbor(box, direction);
+                if (behind < 0 || target < 0 || boxOccupied[target] || board.pushDistances[target] == Board.UNREACHABLE) {
+                    continue;
+                }
+                // the cell of the player itself is free, since the player leaves it to walk behind the box
+                final int targetSlot = (slotAt[target] == slot) ? -1 : slotAt[target];
+                if (reachability.isReachable(behind) && targetSlot < 0) {
+                    candidates[numOfCandidates++] = box * Board.DIRECTIONS + direction;
+                } else if (passing.isReachable(behind)) { // only other players are in the way
+                    if (targetSlot >= 0) {
+                        blockers |= 1 << targetSlot;
+                    }
+                    if (!reachability.isReachable(behind)) {
+                        blockers |= playersIn(node, slot);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < numOfCandidates; i++) {
+            final int box = candidates[i] / Board.DIRECTIONS;
+            final int direction = candidates[i] % Board.DIRECTIONS;
+            final int target = board.neighbor(box, direction);
+            final int[] boxes = Node.pushed(node.boxes, box * OWNERS + slot, target * OWNERS + slot);
+            final int estimate = estimate(boxes);
+            if (estimate == Board.UNREACHABLE) {
+                continue;
+            }
+            boxOccupied[box] = false;
+            boxOccupied[target] = true;
+            occupied[box] = false;
+            occupied[target] = true;
+            final int[] players = node.players.clone();
+            players[slot] = reachability.fill(box, occupied);
+            occupied[target] = false;
+            occupied[box] = true;
+            boxOccupied[target] = false;
+            boxOccupied[box] = true;
+            final long boxKey = node.boxKey ^ boxKey(box * OWNERS + slot) ^ boxKey(target * OWNERS + slot);
+            children.add(new JointNode(boxes, boxKey, players, node.pushes + 1, estimate, node, slot, box, direction));
+        }
+        blockOthers(node, slot, false);
+        return blockers & ~(1 << slot);
+    }
+
+    /**
+     * @return the bitmask of the slots of the other players in the region filled by {@link JointSearch#passing}.
+     */
+    private int playersIn(JointNode node, int slot) {
+        int result = 0;
+        for (int other = 0; other < node.players.length; other++) {
+            if (other != slot && passing.isReachable(node.players[other])) {
+                result |= 1 << other;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Generate the walks of a player in the way of others to every other cell of its region.
+     */
+    private void expandYields(JointNode node, int slot, List<JointNode> children) {
+        blockOthers(node, slot, true);
+        reachability.fill(node.players[slot], occupied);
+        for (int floor = 0; floor < board.floorCount; floor++) {
+            if (floor != node.players[slot] && reachability.isReachable(floor)) {
+                final int[] players = node.players.clone();
+                players[slot] = floor;
+                children.add(new JointNode(node.boxes, node.boxKey, players, node.pushes, node.estimate, node,
+                        slot, -1, -1));
+            }
+        }
+        blockOthers(node, slot, false);
+    }
+
+    /**
+     * Mark the boxes and the players other than the one in the slot in {@link JointSearch#occupied}, or clear them.
+     */
+    private void blockOthers(JointNode node, int slot, boolean value) {
+        for (int box : node.boxes) {
+            occupied[box / OWNERS] = value;
+        }
+        for (int other = 0; other < node.players.length; other++) {
+            if (other != slot) {
+                occupied[node.players[other]] = value;
+            }
+        }
+    }
+
+    private int estimate(int[] boxes) {
+        if (boxes.length <= Expander.MATCHING_LIMIT) {
+            for (int i = 0; i < boxes.length; i++) {
+                boxCells[i] = board.cellOf[boxes[i] / OWNERS];
+            }
+            return matching.lowerBound(boxCells, boxes.length);
+        }
+        int estimate = 0;
+        for (int box : boxes) {
+            final int distance = board.pushDistances[box / OWNERS];
+            if (distance == Board.UNREACHABLE) {
+                return Board.UNREACHABLE;
+            }
+            estimate += distance;
+        }
+        return estimate;
+    }
+
+    private long boxKey(int encoded) {
+        return Long.rotateLeft(board.boxKeys[encoded / OWNERS], encoded % OWNERS);
+    }
+
+    /**
+     * Replay the pushes and yields leading to a node from the start, walking the players along shortest paths.
+     * A player stays where its push leaves it instead of walking to the smallest cell of its region,
+     * unless it is in the way of another player, see {@link JointSearch#replay(List, JointNode, boolean)}.
+     */
+    private List<Move> toMoves(JointNode root, JointNode goal) {
+        final List<JointNode> path = new ArrayList<>();
+        for (JointNode node = goal; node.parent != null; node = node.parent) {
+            path.add(node);
+        }
+        Collections.reverse(path);
+
+        final List<Move> moves = replay(path, root, true);
+        return (moves != null) ? moves : replay(path, root, false);
+    }
+
+    /**
+     * Replay the pushes and yields of a path.
+     * With lazy players, a player only walks to its cell of the nodes when another player cannot walk or push
+     * otherwise, which fails if it can no longer get there. Otherwise, every player walks to its cell of the nodes
+     * right after its push, as the search assumes, which always succeeds.
+     *
+     * @return the moves, or null if the players are lazy and get in each other's way.
+     */
+    private @Nullable List<Move> replay(List<JointNode> path, JointNode root, boolean lazy) {
+        final boolean[] blocked = new boolean[board.floorCount];
+        for (int box : root.boxes) {
+            blocked[box / OWNERS] = true;
+        }
+        for (int player : root.players) {
+            blocked[player] = true;
+        }
+        final int[] previous = new int[board.floorCount];
+        final int[] players = root.players.clone();
+        final List<Move> moves = new ArrayList<>();
+        for (JointNode node : path) {
+            final int slot = node.mover;
+            final int to = (node.pushedBox >= 0) ? board.neighbor(node.pushedBox, Board.opposite(node.direction))
+                    : node.players[slot];
+            if (!walk(moves, slot, to, players, blocked, previous)
+                    && !(makeWay(moves, node, false, players, blocked, previous)
+                    && walk(moves, slot, to, players, blocked, previous))
+                    && !(makeWay(moves, node, true, players, blocked, previous)
+                    && walk(moves, slot, to, players, blocked, previous))) {
+                return null;
+            }
+            if (node.pushedBox >= 0) {
+                final int target = board.neighbor(node.pushedBox, node.direction);
+                if (blocked[target] && !(makeWay(moves, node, false, players, blocked, previous) && !blocked[target])) {
+                    return null;
+                }
+                moves.add(Board.direction(node.direction).toMove(playerIds[slot]));
+                blocked[to] = false;
+                blocked[target] = true;
+                players[slot] = node.pushedBox;
+            }
+            if (!lazy && !walk(moves, slot, node.players[slot], players, blocked, previous)) {
+                return null;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Walk the players to their cells of the parent of a node, where the search assumes them to be,
+     * as long as some of them can get there.
+     *
+     * @param withMover whether to walk the mover of the node too.
+     * @return whether every player got there.
+     */
+    private boolean makeWay(List<Move> moves, JointNode node, boolean withMover, int[] players, boolean[] blocked,
+                            int[] previous) {
+        final int[] cells = Objects.requireNonNull(node.parent).players;
+        boolean walked = true;
+        boolean done = false;
+        while (walked && !done) {
+            walked = false;
+            done = true;
+            for (int slot = 0; slot < players.length; slot++) {
+                if ((slot != node.mover || withMover) && players[slot] != cells[slot]) {
+                    walked |= walk(moves, slot, cells[slot], players, blocked, previous);
+                    done &= players[slot] == cells[slot];
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Walk a player to a floor cell around the boxes and the other players, if it can get there.
+     *
+     * @return whether the player got there.
+     */
+    private boolean walk(List<Move> moves, int slot, int to, int[] players, boolean[] blocked, int[] previous) {
+        blocked[players[slot]] = false;
+        reachability.fill(players[slot], blocked);
+        if (!reachability.isReachable(to)) {
+            blocked[players[slot]] = true;
+            return false;
+        }
+        board.appendWalk(moves, playerIds[slot], players[slot], to, blocked, previous);
+        players[slot] = to;
+        blocked[to] = true;
+        return true;
+    }
+
+    /**
+     * A state of the joint search.
+     * Two nodes are equal if they have the same boxes with the same owners and the players on the same cells.
+     */
+    private static final class JointNode {
+        /**
+         * The boxes as {@code floor * OWNERS + slot}, in ascending order.
+         */
+        final int[] boxes;
+        final long boxKey;
+        /**
+         * The floor cell of each player, indexed by slot.
+         */
+        final int[] players;
+        final int pushes;
+        final int estimate;
+        final @Nullable JointNode parent;
+        /**
+         * The slot of the player who pushed or yielded to get here from the parent, -1 for the initial node.
+         */
+        final int mover;
+        /**
+         * The floor cell of the box pushed to get here from the parent, -1 for a yield or the initial node.
+         */
+        final int pushedBox;
+        final int direction;
+        private final int hash;
+
+        JointNode(int[] boxes, long boxKey, int[] players, int pushes, int estimate, @Nullable JointNode parent,
+                  int mover, int pushedBox, int direction) {
+            this.boxes = boxes;
+            this.boxKey = boxKey;
+            this.players = players;
+            this.pushes = pushes;
+            this.estimate = estimate;
+            this.parent = parent;
+            this.mover = mover;
+            this.pushedBox = pushedBox;
+            this.direction = direction;
+            this.hash = Long.hashCode(boxKey) * 31 + Arrays.hashCode(players);
+        }
+
+        int total() {
+            return pushes + estimate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof JointNode other)) {
+                return false;
+            }
+            return hash == other.hash && Arrays.equals(players, other.players) && Arrays.equals(boxes, other.boxes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package hk.ust.comp3021.solver;
+
+/**
+ * Thrown by a search whose states would take more memory than the limit of the solver,
+ * see {@link Solver#setMemoryLimit(long)}, or more than its tables can hold.
+ */
+final class MemoryLimitException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    MemoryLimitException() {
+        super("The search needs more memory than its limit");
+    }
+}
@@ -0,0 +1,123 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A push-state in the search, i.e., the placement of boxes after a push,
+ * together with the region the player can walk in without pushing again.
+ * Two nodes are equal if they have the same boxes and the same normalized player region,
+ * no matter how many pushes it took to get there.
+ */
+final class Node {
+    /**
+     * An estimate of the heap taken by a node kept by a search besides its boxes:
+     * the node itself, its entries in the open queue and in the map of the best nodes, and the header of its box array.
+     */
+    static final int BASE_BYTES = 128;
+    /**
+     * The floor cells of the boxes in ascending order.
+     */
+    final int[] boxes;
+    /**
+     * The exclusive or of {@link Board#boxKeys} of the boxes.
+     */
+    final long boxKey;
+    /**
+     * The smallest floor cell reachable by the player.
+     */
+    final int player;
+    final int pushes;
+    /**
+     * A lower bound of the pushes still needed.
+     */
+    final int estimate;
+    final @Nullable Node parent;
+    /**
+     * The floor cell of the box pushed to get here from the parent, -1 for the initial node.
+     */
+    final int pushedBox;
+    /**
+     * The direction ordinal of the push to get here from the parent, -1 for the initial node.
+     */
+    final int direction;
+    /**
+     * The direction ordinals of the pushes of the same box following the first one, for a macro move
+     * made of several pushes, see {@link Expander}, or null for a single push.
+     */
+    final int @Nullable [] route;
+    /**
+     * The 64-bit key of this push-state, i.e., {@code boxKey ^ Board.playerKeys[player]}.
+     * Equal nodes always have the same key.
+     */
+    final long key;
+    private final int hash;
+
+    Node(int @NotNull [] boxes, long boxKey, int player, long playerKey, int pushes, int estimate,
+         @Nullable Node parent, int pushedBox, int direction, int @Nullable [] route) {
+        this.boxes = boxes;
+        this.boxKey = boxKey;
+        this.player = player;
+        this.key = boxKey ^ playerKey;
+        this.pushes = pushes;
+        this.estimate = estimate;
+        this.parent = parent;
+        this.pushedBox = pushedBox;
+        this.direction = direction;
+        this.route = route;
+        this.hash = Long.hashCode(key);
+    }
+
+    /**
+     * @param boxes the number of boxes.
+     * @return an estimate of the heap taken by a node with the boxes kept by a search.
+     */
+    static long estimatedBytes(int boxes) {
+        return BASE_BYTES + (long) Integer.BYTES * boxes;
+    }
+
+    /**
+     * @return the estimated total number of pushes of a solution through this node.
+     */
+    int total() {
+        return pushes + estimate;
+    }
+
+    /**
+     * Create the box placement after pushing one box, keeping the cells sorted.
+     *
+     * @param boxes the sorted box cells.
+     * @param from  the cell of the pushed box.
+     * @param to    the cell the box is pushed into.
+     * @return a new sorted array of box cells.
+     */
+    static int @NotNull [] pushed(int @NotNull [] boxes, int from, int to) {
+        final int[] result = boxes.clone();
+        int i = Arrays.binarySearch(result, from);
+        result[i] = to;
+        while (i > 0 && result[i - 1] > to) {
+            result[i] = result[i - 1];
+            result[--i] = to;
+        }
+        while (i < result.length - 1 && result[i + 1] < to) {
+            result[i] = result[i + 1];
+            result[++i] = to;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Node other)) {
+            return false;
+        }
+        return hash == other.hash && player == other.player && Arrays.equals(boxes, other.boxes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
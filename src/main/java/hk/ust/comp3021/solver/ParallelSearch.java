@@ -0,0 +1,137 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A parallel A* search over push-states.
+ * <p>
+ * The search runs in rounds. Each round takes the open nodes with the lowest estimated total, at most
+ * {@link ParallelSearch#MAX_BATCH} of them, and expands them in parallel on a {@link ForkJoinPool}.
+ * The workers deduplicate the successors through a shared {@link TranspositionTable} as they generate them,
+ * and only the main thread touches the open queue. Once the deadline passes, the workers skip the rest of the round.
+ * Since every node of a round has the lowest total, a solution found by a round is still optimal.
+ */
+final class ParallelSearch {
+    private static final int MAX_BATCH = 4096;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table = new TranspositionTable();
+    private final ThreadLocal<Expander> expanders;
+    private long explored = 0;
+    private long deadline;
+
+    /**
+     * @param board      the board.
+     * @param pool       the pool to expand on.
+     * @param macroMoves whether to expand macro moves, see {@link Expander}.
+     */
+    ParallelSearch(@NotNull Board board, @NotNull ForkJoinPool pool, boolean macroMoves) {
+        this.pool = pool;
+        this.expanders = ThreadLocal.withInitial(() -> new Expander(board, macroMoves));
+    }
+
+    /**
+     * Search for a solution.
+     *
+     * @param root     the initial node.
+     * @param deadline the {@link System#nanoTime()} at which to give up.
+     * @param maxNodes the maximum number of nodes to keep.
+     * @return the goal node, or null if there is none.
+     * @throws TimeoutException     if the deadline passes first.
+     * @throws MemoryLimitException if more nodes would have to be kept first.
+     */
+    @Nullable Node search(@NotNull Node root, long deadline, long maxNodes) throws TimeoutException, MemoryLimitException {
+        this.deadline = deadline;
+        final PriorityQueue<Node> open = new PriorityQueue<>(
+                Comparator.comparingInt(Node::total).thenComparingInt(node -> node.estimate));
+        open.add(root);
+        table.offer(root.key, root.pushes);
+        final List<Node> batch = new ArrayList<>();
+        while (!open.isEmpty()) {
+            if (Deadline.hasPassed(deadline)) {
+                throw new TimeoutException();
+            }
+            if (table.size() > maxNodes) {
+                throw new MemoryLimitException();
+            }
+            batch.clear();
+            final int total = open.peek().total();
+            int maxChildren = 0;
+            while (!open.isEmpty() && open.peek().total() == total && batch.size() < MAX_BATCH) {
+                final Node node = open.poll();
+                if (table.get(node.key) < node.pushes) { // a shorter way to the same state has been found
+                    continue;
+                }
+                if (node.estimate == 0) {
+                    return node;
+                }
+                batch.add(node);
+                maxChildren += node.boxes.length * Board.DIRECTIONS;
+            }
+            table.ensureCapacity(maxChildren);
+            final List<Node> children = pool.invoke(new ExpandTask(batch, 0, batch.size()));
+            explored += batch.size();
+            if (Deadline.hasPassed(deadline)) { // the round may have been cut short
+                throw new TimeoutException();
+            }
+            open.addAll(children);
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of nodes expanded so far.
+     */
+    long getExplored() {
+        return explored;
+    }
+
+    /**
+     * Expands a slice of a batch, splitting it in halves until each task has a single node.
+     */
+    private final class ExpandTask extends RecursiveTask<List<Node>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Node> batch;
+        private final int from;
+        private final int to;
+
+        ExpandTask(List<Node> batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Node> compute() {
+            if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                final ExpandTask left = new ExpandTask(batch, from, middle);
+                left.fork();
+                final List<Node> result = new ExpandTask(batch, middle, to).compute();
+                result.addAll(left.join());
+                return result;
+            }
+            final List<Node> children = new ArrayList<>();
+            final List<Node> result = new ArrayList<>();
+            for (int i = from; i < to && !Deadline.hasPassed(deadline); i++) {
+                expanders.get().expand(batch.get(i), children);
+            }
+            for (Node child : children) {
+                if (table.offer(child.key, child.pushes)) {
+                    result.add(child);
+                }
+            }
+            return result;
+        }
+    }
+}
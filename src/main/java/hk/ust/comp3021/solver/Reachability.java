@@ -0,0 +1,65 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A flood fill of the floor cells a player can walk to without pushing any box.
+ * The visited marks and the queue are allocated once and reused by every fill:
+ * instead of clearing the marks, each fill uses a new generation number.
+ */
+final class Reachability {
+    private final Board board;
+    private final int[] visited;
+    private final int[] queue;
+    private int generation = 0;
+
+    Reachability(@NotNull Board board) {
+        this.board = board;
+        this.visited = new int[board.floorCount];
+        this.queue = new int[board.floorCount];
+    }
+
+    /**
+     * Find all cells reachable from the start.
+     * Until the next fill, {@link Reachability#isReachable(int)} tells whether a cell is in the region.
+     *
+     * @param start    the floor cell the player stands on.
+     * @param occupied whether each floor cell is blocked by a box.
+     * @return the smallest floor cell in the region, which identifies the region regardless of the start.
+     */
+    int fill(int start, boolean @NotNull [] occupied) {
+        if (++generation == 0) { // the marks wrapped around, so the old ones must be cleared
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+        int normalized = start;
+        int head = 0;
+        int tail = 0;
+        visited[start] = generation;
+        queue[tail++] = start;
+        while (head < tail) {
+            final int floor = queue[head++];
+            if (floor < normalized) {
+                normalized = floor;
+            }
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                final int next = board.neighbor(floor, direction);
+                if (next >= 0 && visited[next] != generation && !occupied[next]) {
+                    visited[next] = generation;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * @param floor a floor cell.
+     * @return true if the cell was reached by the latest fill.
+     */
+    boolean isReachable(int floor) {
+        return visited[floor] == generation;
+    }
+}
@@ -0,0 +1,27 @@
+package hk.ust.comp3021.solver;
+
+/**
+ * The search algorithms of {@link Solver}, see {@link Solver#setAlgorithm(SearchAlgorithm)}.
+ */
+public enum SearchAlgorithm {
+    /**
+     * A* over push-states, which keeps every state found so far.
+     * It expands each state at most once, but its memory grows with the number of states found.
+     */
+    A_STAR,
+    /**
+     * Iterative-deepening A*, i.e., depth-first searches bounded by the estimated total number of pushes,
+     * raising the bound after each search. Only the current path and a fixed-size cache of visited states are kept,
+     * so memory stays bounded on maps too large for A*, at the price of expanding states again.
+     */
+    IDA_STAR,
+    /**
+     * Breadth-first searches from the initial state forwards and from the goal states backwards, pulling boxes away
+     * from the destinations, until they meet. On levels where both directions branch alike, each side only searches
+     * about half the depth, which pays off where the estimate of A* is far below the real number of pushes,
+     * while A* explores far fewer states where the estimate is close.
+     * Macro moves are not taken, and areas with more destinations than boxes are searched with A*,
+     * since their goal states are too many.
+     */
+    BIDIRECTIONAL
+}
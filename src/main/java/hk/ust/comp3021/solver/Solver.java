@@ -0,0 +1,529 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A Sokoban solver.
+ * <p>
+ * The search runs A* over push-states instead of single moves:
+ * a state is the placement of boxes plus the region the player can walk in, identified by its smallest cell,
+ * and every edge is one push of a box by a player standing somewhere in that region.
+ * This keeps the walking out of the search, so states only differ by box placements that matter.
+ * <p>
+ * The estimate of a state is the minimum-cost matching of its boxes to different destinations by push distance,
+ * see {@link hk.ust.comp3021.game.GameMap#getPushDistances()}, or the sum of the distances to the nearest destinations
+ * on maps with many boxes. Neither overestimates, so the solution found has the minimum number of pushes
+ * among the moves searched.
+ * The walks between pushes are then filled in with shortest paths,
+ * so the number of moves is near-optimal but not necessarily minimal.
+ * Boxes pushed onto cells from which no destination can be reached are pruned right away.
+ * <p>
+ * By default, pushes through tunnels and into goal rooms are taken as macro moves, see {@link Expander},
+ * which cuts the depth and size of the search on maps with corridors and rooms of destinations,
+ * at the price of solutions that may take a few more pushes than the minimum.
+ * Use {@link Solver#setMacroMoves(boolean)} to turn them off when the minimum is needed.
+ * <p>
+ * A* keeps every state found, so its memory grows with the search. On maps too large for that,
+ * {@link SearchAlgorithm#IDA_STAR} searches depth-first within a fixed amount of memory instead,
+ * see {@link Solver#setAlgorithm(SearchAlgorithm)}, while {@link SearchAlgorithm#BIDIRECTIONAL} also searches
+ * backwards from the destinations. {@link Solver#setMemoryLimit(long)} bounds the heap
+ * taken by each solve, on top of its time budget.
+ * <p>
+ * Maps with several players are first split into areas separated by walls, which are solved one after another,
+ * since nothing in one area can affect another. An area with one player owning all its boxes is searched as above.
+ * An area shared by several players is searched jointly, see {@link JointSearch},
+ * and its moves interleave the players as needed, each player only pushing its own boxes.
+ * <p>
+ * A solver keeps its work between solves: areas already solved are not searched again, and a sequential A* search
+ * that runs out of time is continued by the next solve from where it stopped, unless a setting changes in between.
+ * So a game too hard for one budget can be solved by asking again with more budgets.
+ */
+public class Solver {
+    /**
+     * The largest cache of visited states of an iterative-deepening search.
+     */
+    private static final long MAX_CACHE_BYTES = 16L << 20;
+
+    private final Board board;
+    private final List<Area> areas = new ArrayList<>();
+    private boolean macroMoves = true;
+    private SearchAlgorithm algorithm = SearchAlgorithm.A_STAR;
+    private long memoryLimit = Long.MAX_VALUE;
+    /**
+     * The solution of each area found so far, indexed like {@link Solver#areas}.
+     */
+    private final SolverResult.Solved[] solvedAreas;
+    /**
+     * The A* search that ran out of time, if any.
+     */
+    private Frontier suspended;
+
+    /**
+     * Create a solver for a game map.
+     *
+     * @param map The game map.
+     * @throws IllegalArgumentException if there are boxes whose owner is not on the game map.
+     */
+    public Solver(@NotNull GameMap map) {
+        this(Board.of(map));
+    }
+
+    /**
+     * Create a solver for the current placement of players and boxes of a game.
+     *
+     * @param state The game state, which is only read while creating the solver.
+     * @throws IllegalArgumentException if there are boxes whose owner is not in the game.
+     */
+    public Solver(@NotNull GameState state) {
+        this(Board.of(state));
+    }
+
+    /**
+     * @param board the layout and the placement of players and boxes to solve.
+     * @throws IllegalArgumentException if there are boxes whose owner is not on the board.
+     */
+    Solver(@NotNull Board board) {
+        this.board = board;
+        final Set<Integer> playerIds = new HashSet<>();
+        for (int floor = 0; floor < board.floorCount; floor++) {
+            if (board.initialPlayers[floor] >= 0) {
+                playerIds.add(board.initialPlayers[floor]);
+            }
+        }
+        for (int floor = 0; floor < board.floorCount; floor++) {
+            if (board.initialBoxes[floor] >= 0 && !playerIds.contains(board.initialBoxes[floor])) {
+                throw new IllegalArgumentException("No player can push the boxes of player " + board.initialBoxes[floor]);
+            }
+        }
+        splitAreas();
+        this.solvedAreas = new SolverResult.Solved[areas.size()];
+    }
+
+    /**
+     * Group the floor cells with boxes or players into areas connected without crossing walls.
+     */
+    private void splitAreas() {
+        final int[] areaOf = new int[board.floorCount];
+        Arrays.fill(areaOf, -1);
+        final int[] queue = new int[board.floorCount];
+        for (int start = 0; start < board.floorCount; start++) {
+            if (areaOf[start] >= 0 || (board.initialBoxes[start] < 0 && board.initialPlayers[start] < 0)) {
+                continue;
+            }
+            final List<Integer> players = new ArrayList<>();
+            final List<Integer> boxes = new ArrayList<>();
+            int head = 0;
+            int tail = 0;
+            areaOf[start] = areas.size();
+            queue[tail++] = start;
+            while (head < tail) {
+                final int floor = queue[head++];
+                if (board.initialPlayers[floor] >= 0) {
+                    players.add(floor);
+                }
+                if (board.initialBoxes[floor] >= 0) {
+                    boxes.add(floor);
+                }
+                for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                    final int next = board.neighbor(floor, direction);
+                    if (next >= 0 && areaOf[next] < 0) {
+                        areaOf[next] = areas.size();
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            if (!boxes.isEmpty()) {
+                boxes.sort(null);
+                final boolean singlePlayer = players.size() == 1 && boxes.stream()
+                        .allMatch(box -> board.initialBoxes[box] == board.initialPlayers[players.get(0)]);
+                areas.add(new Area(players.stream().mapToInt(Integer::intValue).toArray(),
+                        boxes.stream().mapToInt(Integer::intValue).toArray(), singlePlayer));
+            }
+        }
+    }
+
+    /**
+     * Choose whether the search pushes boxes through tunnels and into goal rooms as macro moves.
+     * Without them, the solution has the minimum number of pushes, but the search may take much longer.
+     * Areas shared by several players are always searched without macro moves.
+     *
+     * @param macroMoves Whether to use macro moves, true by default.
+     */
+    public void setMacroMoves(boolean macroMoves) {
+        this.macroMoves = macroMoves;
+        forget();
+    }
+
+    /**
+     * Choose the search algorithm of single-player areas.
+     * Areas shared by several players are always searched with A*.
+     *
+     * @param algorithm The search algorithm, {@link SearchAlgorithm#A_STAR} by default.
+     */
+    public void setAlgorithm(@NotNull SearchAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        forget();
+    }
+
+    /**
+     * Bound the heap taken by the states kept by each solve, estimated from the number of states and boxes.
+     * An A* search that would need more gives up with {@link SolverResult.OutOfMemory},
+     * while an iterative-deepening search sizes its cache of visited states to half of the limit, at most 16 MiB,
+     * and never runs out.
+     *
+     * @param bytes The maximum number of bytes, {@link Long#MAX_VALUE} by default, i.e., no limit.
+     * @throws IllegalArgumentException if the limit is not positive.
+     */
+    public void setMemoryLimit(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("The memory limit must be positive: " + bytes);
+        }
+        this.memoryLimit = bytes;
+        forget();
+    }
+
+    /**
+     * Drop the work kept from earlier solves, which was done with other settings.
+     */
+    private void forget() {
+        Arrays.fill(solvedAreas, null);
+        suspended = null;
+    }
+
+    /**
+     * Search for a solution of the game map on the calling thread.
+     *
+     * @param timeBudget The maximum wall time to spend.
+     * @return The solution, or the reason why there is none.
+     */
+    public @NotNull SolverResult solve(@NotNull Duration timeBudget) {
+        return solve(timeBudget, 1);
+    }
+
+    /**
+     * Search for a solution of the game map.
+     * With more than one thread, the open states of each round are expanded in parallel on a {@link ForkJoinPool},
+     * and duplicate states are detected through a shared lock-free table of state keys.
+     * Areas shared by several players, and iterative-deepening and bidirectional searches,
+     * always run on the calling thread.
+     *
+     * @param timeBudget  The maximum wall time to spend.
+     * @param parallelism The number of threads to search with.
+     * @return The solution, or the reason why there is none.
+     * @throws IllegalArgumentException if parallelism is not positive.
+     */
+    public @NotNull SolverResult solve(@NotNull Duration timeBudget, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+        }
+        return solveUntil(Deadline.after(timeBudget), parallelism);
+    }
+
+    /**
+     * Search for a solution of the game map, see {@link Solver#solve(Duration, int)}.
+     *
+     * @param deadline    The {@link System#nanoTime()} at which to give up.
+     * @param parallelism The positive number of threads to search with.
+     * @return The solution, or the reason why there is none.
+     */
+    @NotNull SolverResult solveUntil(long deadline, int parallelism) {
+        final long startTime = System.nanoTime();
+        final List<Move> moves = new ArrayList<>();
+        int pushes = 0;
+        long explored = 0;
+        for (int i = 0; i < areas.size(); i++) {
+            final Area area = areas.get(i);
+            if (solvedAreas[i] != null) {
+                moves.addAll(solvedAreas[i].getMoves());
+                pushes += solvedAreas[i].getPushes();
+                continue;
+            }
+            final SolverResult result = area.singlePlayer()
+                    ? solveSinglePlayer(area, deadline, parallelism)
+                    : solveJointly(area, deadline);
+            explored += result.getExploredStates();
+            if (result instanceof SolverResult.Solved solved) {
+                solvedAreas[i] = solved;
+                moves.addAll(solved.getMoves());
+                pushes += solved.getPushes();
+            } else if (result instanceof SolverResult.Timeout) {
+                return new SolverResult.Timeout(explored, elapsedSince(startTime));
+            } else if (result instanceof SolverResult.OutOfMemory) {
+                return new SolverResult.OutOfMemory(explored, elapsedSince(startTime));
+            } else {
+                return new SolverResult.Unsolvable(explored, elapsedSince(startTime));
+            }
+        }
+        return new SolverResult.Solved(moves, pushes, explored, elapsedSince(startTime));
+    }
+
+    private SolverResult solveSinglePlayer(Area area, long deadline, int parallelism) {
+        final long startTime = System.nanoTime();
+        final Node root = new Expander(board, macroMoves).root(area.boxes, area.players[0]);
+        if (root == null) {
+            return new SolverResult.Unsolvable(0, elapsedSince(startTime));
+        }
+        if (algorithm == SearchAlgorithm.IDA_STAR) {
+            return searchIteratively(area, root, startTime, deadline);
+        }
+        if (algorithm == SearchAlgorithm.BIDIRECTIONAL) {
+            final int[] goals = goalsOf(area);
+            if (goals.length == area.boxes.length) {
+                return searchBidirectionally(area, root, goals, startTime, deadline);
+            }
+        }
+        if (parallelism == 1) {
+            return search(area, root, startTime, deadline);
+        }
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final ParallelSearch search = new ParallelSearch(board, pool, macroMoves);
+            try {
+                final Node goal = search.search(root, deadline, maxNodes(area));
+                if (goal == null) {
+                    return new SolverResult.Unsolvable(search.getExplored(), elapsedSince(startTime));
+                }
+                return new SolverResult.Solved(toMoves(area, goal), goal.pushes, search.getExplored(),
+                        elapsedSince(startTime));
+            } catch (TimeoutException e) {
+                return new SolverResult.Timeout(search.getExplored(), elapsedSince(startTime));
+            } catch (MemoryLimitException e) {
+                return new SolverResult.OutOfMemory(search.getExplored(), elapsedSince(startTime));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * A* search of a single-player area, continuing the search suspended by the last solve if it was of this area.
+     */
+    private SolverResult search(Area area, Node root, long startTime, long deadline) {
+        final Frontier frontier = (suspended != null && suspended.area == area) ? suspended : new Frontier(area, root);
+        suspended = null;
+        final Expander expander = new Expander(board, macroMoves);
+        final PriorityQueue<Node> open = frontier.open;
+        final Map<Node, Node> best = frontier.best;
+        final List<Node> children = new ArrayList<>();
+        final long maxNodes = maxNodes(area);
+
+        while (!open.isEmpty()) {
+            if (Deadline.hasPassed(deadline)) {
+                suspended = frontier;
+                return new SolverResult.Timeout(frontier.explored, elapsedSince(startTime));
+            }
+            if (best.size() > maxNodes) {
+                return new SolverResult.OutOfMemory(frontier.explored, elapsedSince(startTime));
+            }
+            final Node node = open.poll();
+            if (best.get(node) != node) { // a shorter way to the same state has been found
+                continue;
+            }
+            if (node.estimate == 0) {
+                final List<Move> moves = toMoves(area, node);
+                return new SolverResult.Solved(moves, node.pushes, frontier.explored, elapsedSince(startTime));
+            }
+            frontier.explored++;
+
+            children.clear();
+            expander.expand(node, children);
+            for (Node child : children) {
+                final Node existing = best.get(child);
+                if (existing == null || existing.pushes > child.pushes) {
+                    best.put(child, child);
+                    open.add(child);
+                }
+            }
+        }
+        return new SolverResult.Unsolvable(frontier.explored, elapsedSince(startTime));
+    }
+
+    private SolverResult searchIteratively(Area area, Node root, long startTime, long deadline) {
+        final long cacheBytes = Math.min(memoryLimit / 2, MAX_CACHE_BYTES);
+        final IterativeDeepeningSearch search = new IterativeDeepeningSearch(new Expander(board, macroMoves),
+                (int) (cacheBytes / IterativeDeepeningSearch.ENTRY_BYTES));
+        try {
+            final Node goal = search.search(root, deadline);
+            if (goal == null) {
+                return new SolverResult.Unsolvable(search.getExplored(), elapsedSince(startTime));
+            }
+            return new SolverResult.Solved(toMoves(area, goal), goal.pushes, search.getExplored(),
+                    elapsedSince(startTime));
+        } catch (TimeoutException e) {
+            return new SolverResult.Timeout(search.getExplored(), elapsedSince(startTime));
+        }
+    }
+
+    private SolverResult searchBidirectionally(Area area, Node root, int[] goals, long startTime, long deadline) {
+        final BidirectionalSearch search = new BidirectionalSearch(board);
+        try {
+            final Node goal = search.search(root, goals, deadline, maxNodes(area));
+            if (goal == null) {
+                return new SolverResult.Unsolvable(search.getExplored(), elapsedSince(startTime));
+            }
+            return new SolverResult.Solved(toMoves(area, goal), goal.pushes, search.getExplored(),
+                    elapsedSince(startTime));
+        } catch (TimeoutException e) {
+            return new SolverResult.Timeout(search.getExplored(), elapsedSince(startTime));
+        } catch (MemoryLimitException e) {
+            return new SolverResult.OutOfMemory(search.getExplored(), elapsedSince(startTime));
+        }
+    }
+
+    /**
+     * @return the sorted floor cells of the destinations in the area.
+     */
+    private int[] goalsOf(Area area) {
+        final boolean[] visited = new boolean[board.floorCount];
+        final int[] queue = new int[board.floorCount];
+        int head = 0;
+        int tail = 0;
+        visited[area.players[0]] = true;
+        queue[tail++] = area.players[0];
+        while (head < tail) {
+            final int floor = queue[head++];
+            for (int direction = 0; direction < Board.DIRECTIONS; direction++) {
+                final int next = board.neighbor(floor, direction);
+                if (next >= 0 && !visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        final List<Integer> goals = new ArrayList<>();
+        for (int floor = 0; floor < board.floorCount; floor++) {
+            if (visited[floor] && board.goals[floor]) {
+                goals.add(floor);
+            }
+        }
+        return goals.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return the number of nodes of the area that an A* search may keep within the memory limit.
+     */
+    private long maxNodes(Area area) {
+        return memoryLimit / Node.estimatedBytes(area.boxes.length);
+    }
+
+    private SolverResult solveJointly(Area area, long deadline) {
+        final long startTime = System.nanoTime();
+        final int[] playerIds = new int[area.players.length];
+        for (int slot = 0; slot < playerIds.length; slot++) {
+            playerIds[slot] = board.initialPlayers[area.players[slot]];
+        }
+        final int[] owners = new int[area.boxes.length];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = playerIds.length; // owned by a player outside the area until found
+            for (int slot = 0; slot < playerIds.length; slot++) {
+                if (playerIds[slot] == board.initialBoxes[area.boxes[i]]) {
+                    owners[i] = slot;
+                }
+            }
+        }
+        final JointSearch search = new JointSearch(board, playerIds);
+        try {
+            final List<Move> moves = search.search(area.boxes, owners, area.players, deadline, maxNodes(area));
+            if (moves == null) {
+                return new SolverResult.Unsolvable(search.getExplored(), elapsedSince(startTime));
+            }
+            return new SolverResult.Solved(moves, search.getPushes(), search.getExplored(), elapsedSince(startTime));
+        } catch (TimeoutException e) {
+            return new SolverResult.Timeout(search.getExplored(), elapsedSince(startTime));
+        } catch (MemoryLimitException e) {
+            return new SolverResult.OutOfMemory(search.getExplored(), elapsedSince(startTime));
+        }
+    }
+
+    private static void mark(boolean[] occupied, int[] boxes, boolean value) {
+        for (int box : boxes) {
+            occupied[box] = value;
+        }
+    }
+
+    /**
+     * Replay the pushes leading to a node from the start, including those of macro moves,
+     * walking the player along shortest paths between them.
+     */
+    private List<Move> toMoves(Area area, Node goal) {
+        final List<Node> path = new ArrayList<>();
+        for (Node node = goal; node.parent != null; node = node.parent) {
+            path.add(node);
+        }
+        Collections.reverse(path);
+
+        final int playerId = board.initialPlayers[area.players[0]];
+        final boolean[] occupied = new boolean[board.floorCount];
+        mark(occupied, area.boxes, true);
+        final int[] previous = new int[board.floorCount];
+        final List<Move> moves = new ArrayList<>();
+        int player = area.players[0];
+        for (Node node : path) {
+            int box = node.pushedBox;
+            int direction = node.direction;
+            for (int step = 0; ; step++) {
+                final int behind = board.neighbor(box, Board.opposite(direction));
+                board.appendWalk(moves, playerId, player, behind, occupied, previous);
+                moves.add(Board.direction(direction).toMove(playerId));
+                occupied[box] = false;
+                player = box;
+                box = board.neighbor(box, direction);
+                occupied[box] = true;
+                if (node.route == null || step == node.route.length) {
+                    break;
+                }
+                direction = node.route[step];
+            }
+        }
+        return moves;
+    }
+
+    private static Duration elapsedSince(long startTime) {
+        return Duration.ofNanos(System.nanoTime() - startTime);
+    }
+
+    /**
+     * The players and boxes of an area of the map enclosed by walls.
+     *
+     * @param players      the floor cells of the players.
+     * @param boxes        the floor cells of the boxes in ascending order.
+     * @param singlePlayer whether the area has one player, who owns all boxes of the area.
+     */
+    private record Area(int[] players, int[] boxes, boolean singlePlayer) {
+    }
+
+    /**
+     * The open and the best known nodes of an A* search of an area, kept when the search runs out of time.
+     */
+    private static final class Frontier {
+        private final Area area;
+        // ties are broken towards the nodes closer to the goal, which tend to finish the search sooner
+        private final PriorityQueue<Node> open = new PriorityQueue<>(
+                Comparator.comparingInt(Node::total).thenComparingInt(node -> node.estimate));
+        private final Map<Node, Node> best = new HashMap<>();
+        private long explored = 0;
+
+        Frontier(Area area, Node root) {
+            this.area = area;
+            open.add(root);
+            best.put(root, root);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Move;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The result of solving a game map.
+ */
+public abstract sealed class SolverResult {
+
+    private final long exploredStates;
+    private final Duration elapsed;
+
+    /**
+     * @param exploredStates The number of push-states expanded by the search.
+     * @param elapsed        The wall time spent by the search.
+     */
+    protected SolverResult(long exploredStates, @NotNull Duration elapsed) {
+        this.exploredStates = exploredStates;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return The number of push-states expanded by the search.
+     */
+    public long getExploredStates() {
+        return exploredStates;
+    }
+
+    /**
+     * @return The wall time spent by the search.
+     */
+    public @NotNull Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Denotes a solved game map.
+     */
+    public static final class Solved extends SolverResult {
+
+        private final List<Move> moves;
+        private final int pushes;
+
+        /**
+         * @param moves          The moves solving the game map, in order.
+         * @param pushes         The number of moves that push a box.
+         * @param exploredStates The number of push-states expanded by the search.
+         * @param elapsed        The wall time spent by the search.
+         */
+        public Solved(@NotNull List<Move> moves, int pushes, long exploredStates, @NotNull Duration elapsed) {
+            super(exploredStates, elapsed);
+            this.moves = List.copyOf(moves);
+            this.pushes = pushes;
+        }
+
+        /**
+         * @return The moves solving the game map, in order.
+         */
+        public @NotNull @Unmodifiable List<Move> getMoves() {
+            return moves;
+        }
+
+        /**
+         * @return The number of moves that push a box.
+         * It is the minimum number of pushes needed to solve the game map,
+         * unless the solver took macro moves, see {@link Solver#setMacroMoves(boolean)}.
+         */
+        public int getPushes() {
+            return pushes;
+        }
+    }
+
+    /**
+     * Denotes a game map that cannot be solved.
+     */
+    public static final class Unsolvable extends SolverResult {
+
+        /**
+         * @param exploredStates The number of push-states expanded by the search.
+         * @param elapsed        The wall time spent by the search.
+         */
+        public Unsolvable(long exploredStates, @NotNull Duration elapsed) {
+            super(exploredStates, elapsed);
+        }
+    }
+
+    /**
+     * Denotes a search that ran out of its time budget before finding out whether the game map can be solved.
+     */
+    public static final class Timeout extends SolverResult {
+
+        /**
+         * @param exploredStates The number of push-states expanded by the search.
+         * @param elapsed        The wall time spent by the search.
+         */
+        public Timeout(long exploredStates, @NotNull Duration elapsed) {
+            super(exploredStates, elapsed);
+        }
+    }
+
+    /**
+     * Denotes a search that ran out of its memory limit before finding out whether the game map can be solved,
+     * see {@link Solver#setMemoryLimit(long)}.
+     */
+    public static final class OutOfMemory extends SolverResult {
+
+        /**
+         * @param exploredStates The number of push-states expanded by the search.
+         * @param elapsed        The wall time spent by the search.
+         */
+        public OutOfMemory(long exploredStates, @NotNull Duration elapsed) {
+            super(exploredStates, elapsed);
+        }
+    }
+}
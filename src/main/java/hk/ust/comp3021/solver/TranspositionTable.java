@@ -0,0 +1,142 @@
+package hk.ust.comp3021.solver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free hash table from 64-bit push-state keys to the fewest pushes found to reach them,
+ * shared by all threads of a parallel search.
+ * <p>
+ * Slots are claimed with a compare-and-set on the key, and probed linearly.
+ * States are only told apart by their keys, so two states with colliding keys are treated as one;
+ * with random 64-bit keys this is negligible next to the number of states a search can hold.
+ * <p>
+ * The table does not grow by itself while it is shared.
+ * The search calls {@link TranspositionTable#ensureCapacity(int)} between rounds, when no other thread uses it.
+ */
+final class TranspositionTable {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private AtomicLongArray keys;
+    /**
+     * The fewest pushes plus one of the key in the same slot, 0 if not known yet.
+     */
+    private AtomicIntegerArray values;
+    private final AtomicInteger size = new AtomicInteger();
+
+    TranspositionTable() {
+        this.keys = new AtomicLongArray(INITIAL_CAPACITY);
+        this.values = new AtomicIntegerArray(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Record that a state can be reached with the given number of pushes.
+     *
+     * @param key    the key of the state.
+     * @param pushes the number of pushes.
+     * @return true if the state is new or this is fewer pushes than known before, i.e., the state should be searched.
+     */
+    boolean offer(long key, int pushes) {
+        final long stored = storedKey(key);
+        final int mask = keys.length() - 1;
+        for (int slot = spread(stored) & mask; ; slot = (slot + 1) & mask) {
+            long current = keys.get(slot);
+            if (current == 0) {
+                if (keys.compareAndSet(slot, 0, stored)) {
+                    size.incrementAndGet();
+                    current = stored;
+                } else {
+                    current = keys.get(slot);
+                }
+            }
+            if (current == stored) {
+                return lower(slot, pushes + 1);
+            }
+        }
+    }
+
+    /**
+     * @param key the key of a state.
+     * @return the fewest pushes recorded for the state, or {@link Integer#MAX_VALUE} if it is unknown.
+     */
+    int get(long key) {
+        final long stored = storedKey(key);
+        final int mask = keys.length() - 1;
+        for (int slot = spread(stored) & mask; ; slot = (slot + 1) & mask) {
+            final long current = keys.get(slot);
+            if (current == 0) {
+                return Integer.MAX_VALUE;
+            }
+            if (current == stored) {
+                final int value = values.get(slot);
+                return (value == 0) ? Integer.MAX_VALUE : value - 1;
+            }
+        }
+    }
+
+    /**
+     * Make room for more states, so that the table stays at most half full.
+     * This must not be called while other threads are using the table.
+     *
+     * @param additional the maximum number of states added before the next call.
+     * @throws MemoryLimitException if the table would need more than 2^30 slots.
+     */
+    void ensureCapacity(int additional) throws MemoryLimitException {
+        final long needed = 2L * ((long) size.get() + additional);
+        if (needed <= keys.length()) {
+            return;
+        }
+        if (needed > 1 << 30) {
+            throw new MemoryLimitException();
+        }
+        final AtomicLongArray oldKeys = keys;
+        final AtomicIntegerArray oldValues = values;
+        final int capacity = Integer.highestOneBit((int) needed - 1) << 1;
+        keys = new AtomicLongArray(capacity);
+        values = new AtomicIntegerArray(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length(); i++) {
+            final long key = oldKeys.get(i);
+            if (key != 0) {
+                int slot = spread(key) & mask;
+                while (keys.get(slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys.set(slot, key);
+                values.set(slot, oldValues.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return the number of states in the table.
+     */
+    int size() {
+        return size.get();
+    }
+
+    private boolean lower(int slot, int value) {
+        while (true) {
+            final int current = values.get(slot);
+            if (current != 0 && current <= value) {
+                return false;
+            }
+            if (values.compareAndSet(slot, current, value)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 0 marks an empty slot, so it cannot be stored as a key.
+     */
+    private static long storedKey(long key) {
+        return (key == 0) ? 1 : key;
+    }
+
+    private static int spread(long key) {
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32);
+    }
+}
@@ -56,6 +56,10 @@ public class TerminalInputEngine implements InputEngine {
                 return new Move.Right(1);
             case "U": // undo
                 return new Undo(-1);
+            case "?", "HINT A": // hint for player A
+                return new Hint(0);
+            case "HINT B": // hint for player B
+                return new Hint(1);
             case "EXIT": // exit
                 return new Exit(-1);
             default: // invalid
@@ -32,11 +32,11 @@ public class TerminalRenderingEngine implements RenderingEngine {
         for (int y = 0; y < state.getMapMaxHeight(); y++) {
             for (int x = 0; x < state.getMapMaxWidth(); x++) {
                 final var entity = state.getEntity(Position.of(x, y));
-                final var charToPrint = switch (entity) {
+                final char charToPrint = switch (entity) {
                     case Wall ignored -> '#';
-                    case Box b -> Character.toString((char)b.getPlayerId()+97);
-                    case Player p -> Character.toString((char)p.getId()+65);
-                    case Empty ignored -> emptyOrDes(new Position(x, y), state);
+                    case Box b -> (char) (b.getPlayerId() + 97);
+                    case Player p -> (char) (p.getId() + 65);
+                    case Empty ignored -> emptyOrDes(Position.of(x, y), state);
                     case null -> ' ';
                     default -> ' ';
                 };
@@ -4,17 +4,27 @@ package hk.ust.comp3021.tui;
 import hk.ust.comp3021.actions.*;
 import hk.ust.comp3021.entities.Player;
 import hk.ust.comp3021.game.*;
+import hk.ust.comp3021.solver.HintEngine;
 import hk.ust.comp3021.utils.StringResources;
 
+import java.time.Duration;
+
 /**
  * A Sokoban game running in the terminal.
  */
 public class TerminalSokobanGame extends AbstractSokobanGame {
 
+    /**
+     * The maximum time spent on searching for a hint, so that the game stays responsive.
+     */
+    private static final Duration HINT_BUDGET = Duration.ofMillis(50);
+
     private final InputEngine inputEngine;
 
     private final RenderingEngine renderingEngine;
 
+    private final HintEngine hintEngine = new HintEngine();
+
     /**
      * Create a new instance of TerminalSokobanGame.
      * Terminal-based game only support at most two players, although the hk.ust.comp3021.game package supports up to 26 players.
@@ -33,7 +43,7 @@ public class TerminalSokobanGame extends AbstractSokobanGame {
         int numOfPlayers = 0;
         for (int i = 0; i < gameState.getMapMaxHeight(); i++) {
             for (int j = 0; j < gameState.getMapMaxWidth(); j++) {
-                if (gameState.getEntity(new Position(j, i)) instanceof Player) {
+                if (gameState.getEntity(Position.of(j, i)) instanceof Player) {
                     numOfPlayers++;
                 }
             }
@@ -50,6 +60,9 @@ public class TerminalSokobanGame extends AbstractSokobanGame {
         do { // game loop
             renderingEngine.render(state);
             renderingEngine.message("");
+            if (state.isDeadlocked()) { // the game cannot be won without undo
+                renderingEngine.message(StringResources.DEADLOCK_MESSAGE);
+            }
             if (state.getUndoQuota().isEmpty()) { // unlimited undo quota
                 renderingEngine.message(String.format(StringResources.UNDO_QUOTA_TEMPLATE, StringResources.UNDO_QUOTA_UNLIMITED));
             } else { // limited undo quota
@@ -68,6 +81,10 @@ public class TerminalSokobanGame extends AbstractSokobanGame {
                 break;
             } else if (action instanceof Undo) {
                 state.undo();
+            } else if (action instanceof Hint) {
+                renderingEngine.message(hintEngine.hint(state, action.getInitiator(), HINT_BUDGET)
+                        .map(move -> String.format(StringResources.HINT_TEMPLATE, move.getDirection().name().toLowerCase()))
+                        .orElse(StringResources.NO_HINT_MESSAGE));
             }
             // ignore Move since handled in AbstractSokobanGame::processAction
 
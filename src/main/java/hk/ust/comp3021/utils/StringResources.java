@@ -12,6 +12,14 @@ public class StringResources {
     public static final String UNDO_QUOTA_RUN_OUT = "You have run out of your undo quota.";
 
     public static final String PLAYER_NOT_FOUND = "Player not found.";
+    public static final String HIT_WALL_MESSAGE = "You hit a wall.";
+    public static final String HIT_PLAYER_MESSAGE = "You hit another player.";
+    public static final String OTHERS_BOX_MESSAGE = "You cannot move other players' boxes.";
+    public static final String BOX_BLOCKED_MESSAGE = "Failed to push the box.";
+
+    public static final String HINT_TEMPLATE = "Hint: move %s.";
+    public static final String NO_HINT_MESSAGE = "No hint available.";
+    public static final String DEADLOCK_MESSAGE = "A box can no longer reach a destination. Undo to continue.";
 
     public static final String GAME_EXIT_MESSAGE = "Game exits.";
     public static final String WIN_MESSAGE = "You win.";
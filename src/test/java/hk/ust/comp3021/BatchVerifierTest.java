@@ -0,0 +1,119 @@
+package hk.ust.comp3021;
+
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class BatchVerifierTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testVerifyDirectory() throws IOException, InterruptedException {
+        final var levels = Files.createDirectory(tempDir.resolve("levels"));
+        Files.writeString(levels.resolve("solvable.map"), """
+                233
+                ######
+                #A.a@#
+                ######
+                """);
+        Files.writeString(levels.resolve("unsolvable.map"), """
+                233
+                ######
+                #a..@#
+                #A...#
+                ######
+                """);
+        Files.writeString(levels.resolve("invalid.map"), """
+                233
+                ######
+                #A.a.#
+                ######
+                """);
+        Files.writeString(levels.resolve("notes.txt"), "not a level");
+        final var resultsFile = tempDir.resolve("results.tsv");
+
+        final var counts = new BatchVerifier(Duration.ofSeconds(1), 2).verify(levels, resultsFile);
+
+        assertEquals(Map.of(BatchVerifier.Status.SOLVED, 1, BatchVerifier.Status.UNSOLVABLE, 1,
+                BatchVerifier.Status.INVALID, 1), counts);
+        final var lines = Files.readAllLines(resultsFile).stream()
+                .collect(Collectors.toMap(line -> line.split("\t")[0], line -> line.split("\t")));
+        assertEquals(3, lines.size());
+        assertArrayEquals(new String[]{"SOLVED", "2", "1"}, Arrays.copyOfRange(lines.get("solvable.map"), 1, 4));
+        assertEquals("UNSOLVABLE", lines.get("unsolvable.map")[1]);
+        assertEquals("-1", lines.get("unsolvable.map")[3]);
+        assertEquals("INVALID", lines.get("invalid.map")[1]);
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testMultiPlayerLevels() throws IOException {
+        final var verifier = new BatchVerifier(Duration.ofSeconds(1), 1);
+        final var shared = Files.writeString(tempDir.resolve("shared.map"), """
+                233
+                #######
+                #A.a.@#
+                #.....#
+                #B.b.@#
+                #######
+                """);
+        // the players walk straight to their boxes and push them, without walking anywhere else
+        assertTrue(verifier.verify(shared).toLine().startsWith("shared.map\tSOLVED\t6\t4\t"));
+
+        // player 1 has to enter the left column before player 0 closes it with its box
+        final var closing = Files.writeString(tempDir.resolve("closing.map"), """
+                -1
+                #######
+                #.#.@.#
+                #.##bB#
+                #.A.b.#
+                #.@a.@#
+                #######
+                """);
+        assertEquals(BatchVerifier.Status.SOLVED, verifier.verify(closing).status());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testMemoryLimitPerLevel() throws IOException {
+        final var file = Files.writeString(tempDir.resolve("level.map"), """
+                233
+                #######
+                #A....#
+                #..a.@#
+                #..a.@#
+                #.....#
+                #######
+                """);
+
+        final var solved = new BatchVerifier(Duration.ofSeconds(1), 1).verify(file);
+        assertEquals(BatchVerifier.Status.SOLVED, solved.status());
+        // with as many threads as that, the share of the heap of each one is a few bytes
+        final var outOfMemory = new BatchVerifier(Duration.ofSeconds(1), Integer.MAX_VALUE).verify(file);
+        assertEquals(BatchVerifier.Status.OUT_OF_MEMORY, outOfMemory.status());
+        assertTrue(outOfMemory.toLine().startsWith("level.map\tOUT_OF_MEMORY\t-1\t-1\t"));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchVerifier(Duration.ofSeconds(1), 0));
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 
 @ExtendWith(TestExtension.class)
 class MoveTest {
@@ -49,4 +50,19 @@ class MoveTest {
                 new Move.Down(-1).nextPosition(pos)
         );
     }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void directionMatchesNextPosition() {
+        for (Direction direction : Direction.values()) {
+            final var move = direction.toMove(1);
+            assertEquals(direction, move.getDirection());
+            assertEquals(1, move.getInitiator());
+            assertEquals(
+                    Position.of(pos.x() + direction.getDx(), pos.y() + direction.getDy()),
+                    move.nextPosition(pos)
+            );
+        }
+        assertInstanceOf(Move.Up.class, Direction.UP.toMove(0));
+    }
 }
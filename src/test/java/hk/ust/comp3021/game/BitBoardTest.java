@@ -0,0 +1,125 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.ActionResult;
+import hk.ust.comp3021.actions.Direction;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class BitBoardTest {
+
+    private static final String twoPlayersMap = """
+            -1
+            ##########
+            #A.a..@..#
+            #..b.#.@.#
+            #.#..a...#
+            #..B..b@.#
+            #.@......#
+            ##########
+            """;
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testInitialBoard() {
+        final var gameMap = TestHelper.parseGameMap(twoPlayersMap);
+        final var bitBoard = new BitBoard(gameMap);
+
+        for (int y = 0; y < gameMap.getMaxHeight(); y++) {
+            for (int x = 0; x < gameMap.getMaxWidth(); x++) {
+                assertEquals(gameMap.getEntity(Position.of(x, y)), bitBoard.getEntity(Position.of(x, y)));
+            }
+        }
+        assertEquals(Position.of(1, 1), bitBoard.getPlayerPosition(0));
+        assertEquals(Position.of(3, 4), bitBoard.getPlayerPosition(1));
+        assertNull(bitBoard.getPlayerPosition(2));
+        assertFalse(bitBoard.isWin());
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testPushToWin() {
+        final var bitBoard = new BitBoard(TestHelper.parseGameMap("""
+                233
+                ######
+                #Aa.@#
+                ######
+                """));
+
+        assertEquals(MoveOutcome.PUSHED, bitBoard.move(0, Direction.RIGHT));
+        assertFalse(bitBoard.isWin());
+        assertEquals(MoveOutcome.PUSHED, bitBoard.move(0, Direction.RIGHT));
+        assertTrue(bitBoard.isWin());
+        assertEquals(MoveOutcome.BOX_BLOCKED, bitBoard.move(0, Direction.RIGHT));
+        assertEquals(MoveOutcome.HIT_WALL, bitBoard.move(0, Direction.UP));
+        assertEquals(MoveOutcome.PLAYER_NOT_FOUND, bitBoard.move(1, Direction.UP));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testCopyIsIndependent() {
+        final var bitBoard = new BitBoard(TestHelper.parseGameMap(twoPlayersMap));
+        final var copy = bitBoard.copy();
+        assertEquals(bitBoard, copy);
+        assertEquals(bitBoard.stateHash(), copy.stateHash());
+
+        assertEquals(MoveOutcome.MOVED, copy.move(0, Direction.DOWN));
+        assertNotEquals(bitBoard, copy);
+        assertEquals(Position.of(1, 1), bitBoard.getPlayerPosition(0));
+        assertEquals(Position.of(1, 2), copy.getPlayerPosition(0));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testSameRulesAsProcessAction() {
+        final var random = new Random(3021);
+        final var directions = Direction.values();
+        for (int game = 0; game < 20; game++) {
+            final var gameState = new GameState(TestHelper.parseGameMap(twoPlayersMap));
+            final var sokobanGame = new SokobanGameForTesting(gameState);
+            final var bitBoard = new BitBoard(gameState);
+            for (int step = 0; step < 500; step++) {
+                final var playerId = random.nextInt(3); // player C does not exist
+                final var direction = directions[random.nextInt(directions.length)];
+
+                final var result = sokobanGame.feedActionForProcessing(direction.toMove(playerId));
+                final var outcome = bitBoard.move(playerId, direction);
+
+                assertEquals(result instanceof ActionResult.Success, outcome.isSuccess());
+                for (int y = 0; y < gameState.getMapMaxHeight(); y++) {
+                    for (int x = 0; x < gameState.getMapMaxWidth(); x++) {
+                        assertEquals(gameState.getEntity(Position.of(x, y)), bitBoard.getEntity(Position.of(x, y)));
+                    }
+                }
+                assertEquals(gameState.isWin(), bitBoard.isWin());
+                final var rebuilt = new BitBoard(gameState);
+                assertEquals(rebuilt, bitBoard);
+                assertEquals(rebuilt.stateHash(), bitBoard.stateHash());
+            }
+        }
+    }
+
+    private static class SokobanGameForTesting extends AbstractSokobanGame {
+
+        protected SokobanGameForTesting(GameState gameState) {
+            super(gameState);
+        }
+
+        @Override
+        public void run() {
+        }
+
+        public ActionResult feedActionForProcessing(Action action) {
+            return processAction(action);
+        }
+    }
+}
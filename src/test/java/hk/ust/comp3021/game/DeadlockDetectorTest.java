@@ -0,0 +1,149 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.ActionResult;
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.entities.Box;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class DeadlockDetectorTest {
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testPushIntoCorner() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                ######
+                #.a.@#
+                #...A#
+                ######
+                """));
+        final var game = new SokobanGameForTesting(gameState);
+        assertFalse(gameState.isDeadlocked());
+
+        game.feedActionForProcessing(new Move.Up(0));
+        game.feedActionForProcessing(new Move.Left(0));
+        assertFalse(gameState.isDeadlocked());
+        game.feedActionForProcessing(new Move.Left(0));
+        assertTrue(gameState.isDeadlocked());
+
+        // walking around does not change anything
+        game.feedActionForProcessing(new Move.Down(0));
+        assertTrue(gameState.isDeadlocked());
+
+        gameState.undo();
+        assertTrue(gameState.isDeadlocked());
+        gameState.undo();
+        assertFalse(gameState.isDeadlocked());
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testFreezeAgainstWall() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                #######
+                #..@..#
+                #.aa..#
+                #..A..#
+                #@....#
+                #######
+                """));
+        final var game = new SokobanGameForTesting(gameState);
+
+        // the first box alone along the wall can still be pushed sideways
+        game.feedActionForProcessing(new Move.Up(0));
+        assertFalse(gameState.isDeadlocked());
+        assertFalse(gameState.getGameMap().isDeadSquare(Position.of(2, 1)));
+
+        game.feedActionForProcessing(new Move.Down(0));
+        game.feedActionForProcessing(new Move.Left(0));
+        game.feedActionForProcessing(new Move.Up(0));
+        // two boxes side by side along the wall block each other
+        assertInstanceOf(Box.class, gameState.getEntity(Position.of(2, 1)));
+        assertTrue(gameState.isDeadlocked());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testBlockOfFourBoxes() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                ########
+                #......#
+                #.aa...#
+                #.a..aA#
+                #......#
+                #@@@@..#
+                ########
+                """));
+        final var game = new SokobanGameForTesting(gameState);
+
+        game.feedActionForProcessing(new Move.Left(0));
+        assertFalse(gameState.isDeadlocked());
+        game.feedActionForProcessing(new Move.Left(0));
+        assertTrue(gameState.isDeadlocked());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testFrozenOnDestination() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                ######
+                #@a.A#
+                #....#
+                ######
+                """));
+        final var game = new SokobanGameForTesting(gameState);
+
+        game.feedActionForProcessing(new Move.Left(0));
+        game.feedActionForProcessing(new Move.Left(0));
+        assertTrue(gameState.isWin());
+        assertFalse(gameState.isDeadlocked());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testNotDeadlockedInOpenRoom() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                #######
+                #A....#
+                #.a...#
+                #..a..#
+                #...@@#
+                #######
+                """));
+        final var game = new SokobanGameForTesting(gameState);
+
+        game.feedActionForProcessing(new Move.Right(0));
+        game.feedActionForProcessing(new Move.Down(0));
+        // two boxes side by side away from the walls can still be pushed up and down
+        assertInstanceOf(Box.class, gameState.getEntity(Position.of(2, 3)));
+        assertFalse(gameState.isDeadlocked());
+    }
+
+    private static class SokobanGameForTesting extends AbstractSokobanGame {
+
+        protected SokobanGameForTesting(GameState gameState) {
+            super(gameState);
+        }
+
+        @Override
+        public void run() {
+        }
+
+        public ActionResult feedActionForProcessing(Action action) {
+            return processAction(action);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package hk.ust.comp3021.game;
 
+import hk.ust.comp3021.actions.Direction;
 import hk.ust.comp3021.entities.Box;
 import hk.ust.comp3021.entities.Empty;
+import hk.ust.comp3021.entities.Entities;
 import hk.ust.comp3021.entities.Player;
 import hk.ust.comp3021.entities.Wall;
 import hk.ust.comp3021.utils.TestExtension;
@@ -14,6 +16,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -93,6 +96,18 @@ class GameMapTest {
         assertTrue(entity instanceof Wall);
     }
 
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testParsedEntitiesAreShared() {
+        final var gameMap = TestHelper.parseGameMap(rectangularMap);
+        final var otherMap = TestHelper.parseGameMap(rectangularMap);
+        assertSame(Entities.wall(), gameMap.getEntity(Position.of(0, 0)));
+        assertSame(Entities.empty(), gameMap.getEntity(Position.of(2, 1)));
+        assertSame(Entities.player(0), gameMap.getEntity(Position.of(1, 1)));
+        assertSame(gameMap.getEntity(Position.of(2, 4)), otherMap.getEntity(Position.of(3, 5)));
+        assertEquals(new Box(0), gameMap.getEntity(Position.of(2, 4)));
+    }
+
     private static final String nonRectangularMap = """
             233
             ######
@@ -276,4 +291,258 @@ class GameMapTest {
             }
         });
     }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testDeadSquares() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #A....#
+                #.a..@#
+                #.....#
+                #######
+                """);
+        // corners
+        assertTrue(gameMap.isDeadSquare(Position.of(1, 1)));
+        assertTrue(gameMap.isDeadSquare(Position.of(5, 3)));
+        // along the top and bottom walls, where there is no destination
+        assertTrue(gameMap.isDeadSquare(Position.of(3, 1)));
+        assertTrue(gameMap.isDeadSquare(Position.of(3, 3)));
+        // along the left wall, from which a box can never be pushed away
+        assertTrue(gameMap.isDeadSquare(Position.of(1, 2)));
+        // the destination and the cells in line with it
+        assertFalse(gameMap.isDeadSquare(Position.of(5, 2)));
+        assertFalse(gameMap.isDeadSquare(Position.of(2, 2)));
+        // walls are not dead squares
+        assertFalse(gameMap.isDeadSquare(Position.of(0, 0)));
+
+        final var deadSquares = gameMap.getDeadSquares();
+        assertEquals(11, deadSquares.cardinality());
+        assertTrue(deadSquares.get(7 + 1));
+        // the bitset is a copy
+        deadSquares.clear();
+        assertTrue(gameMap.isDeadSquare(Position.of(1, 1)));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testDeadSquaresFollowPutEntity() {
+        final var gameMap = new GameMap(5, 3, Collections.singleton(Position.of(3, 1)), 233);
+        for (int x = 0; x < 5; x++) {
+            for (int y = 0; y < 3; y++) {
+                gameMap.putEntity(Position.of(x, y), (y == 1 && x > 0 && x < 4) ? Entities.empty() : Entities.wall());
+            }
+        }
+        // a one-wide corridor: a box can be pushed right onto the destination, but never left
+        assertTrue(gameMap.isDeadSquare(Position.of(1, 1)));
+        assertFalse(gameMap.isDeadSquare(Position.of(2, 1)));
+        assertFalse(gameMap.isDeadSquare(Position.of(3, 1)));
+
+        gameMap.putEntity(Position.of(1, 1), Entities.wall());
+        assertTrue(gameMap.isDeadSquare(Position.of(2, 1)));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testDeadSquaresOfLargeMap() {
+        final var size = 1500;
+        final var builder = new StringBuilder("-1\n");
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final char c;
+                if (y == 0 || x == 0 || y == size - 1 || x == size - 1) {
+                    c = '#';
+                } else if (y == 1 && x == 1) {
+                    c = 'A';
+                } else if (y == 2 && x == 2) {
+                    c = 'a';
+                } else if (y == 3 && x == 3) {
+                    c = '@';
+                } else {
+                    c = '.';
+                }
+                builder.append(c);
+            }
+            builder.append('\n');
+        }
+        final var gameMap = TestHelper.parseGameMap(builder.toString());
+
+        // only the cells along the walls are dead
+        assertEquals(4 * (size - 3), gameMap.getDeadSquares().cardinality());
+        assertFalse(gameMap.isDeadSquare(Position.of(size / 2, size / 2)));
+        assertTrue(gameMap.isDeadSquare(Position.of(size / 2, 1)));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testPushDistances() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #########
+                #A......#
+                #...a...#
+                #...@a..#
+                #.......#
+                #.......#
+                #...@...#
+                #.......#
+                #########
+                """);
+        final var distances = gameMap.getPushDistances();
+        assertSame(distances, gameMap.getPushDistances());
+        assertEquals(2, distances.getDestinationCount());
+        // destinations are numbered in row-major order
+        assertEquals(Position.of(4, 3), distances.getDestination(0));
+        assertEquals(Position.of(4, 6), distances.getDestination(1));
+
+        assertEquals(1, distances.getDistance(0, Position.of(4, 2)));
+        assertEquals(4, distances.getDistance(1, Position.of(4, 2)));
+        assertEquals(4, distances.getDistance(1, Position.of(5, 3)));
+        assertEquals(0, distances.getNearestDistance(Position.of(4, 6)));
+        assertEquals(1, distances.getNearestDistance(Position.of(5, 3)));
+        // a corner, and a wall
+        assertEquals(PushDistances.UNREACHABLE, distances.getNearestDistance(Position.of(1, 1)));
+        assertEquals(PushDistances.UNREACHABLE, distances.getDistance(0, Position.of(0, 0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> distances.getNearestDistance(Position.of(9, 0)));
+
+        // both boxes are next to the first destination, but one of them has to go to the second
+        final int[] boxes = {2 * 9 + 4, 3 * 9 + 5, 1 * 9 + 1};
+        assertEquals(5, distances.lowerBound(boxes, 2));
+        assertEquals(PushDistances.UNREACHABLE, distances.lowerBound(boxes, 3));
+        assertEquals(0, distances.lowerBound(new int[]{3 * 9 + 4, 6 * 9 + 4}, 2));
+
+        gameMap.putEntity(Position.of(4, 5), Entities.wall());
+        final var updated = gameMap.getPushDistances();
+        assertNotSame(distances, updated);
+        // the box has to go around the new wall
+        assertEquals(6, updated.getDistance(1, Position.of(4, 2)));
+        assertEquals(4, distances.getDistance(1, Position.of(4, 2)));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPushDistanceLowerBoundIsMinimumMatching() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ########
+                #A.....#
+                #.@..@.#
+                #..aa..#
+                #.#aa..#
+                #.@...@#
+                #......#
+                ########
+                """);
+        final var distances = gameMap.getPushDistances();
+        final var random = new java.util.Random(3021);
+        final var floors = new java.util.ArrayList<Integer>();
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                if (distances.getNearestDistance(Position.of(x, y)) != PushDistances.UNREACHABLE) {
+                    floors.add(y * 8 + x);
+                }
+            }
+        }
+        final var matching = distances.newMatching(); // reused across rounds of different sizes
+        for (int round = 0; round < 500; round++) {
+            final int count = 1 + random.nextInt(4);
+            final int[] boxes = new int[count];
+            for (int i = 0; i < count; i++) {
+                boxes[i] = floors.get(random.nextInt(floors.size()));
+            }
+            final int expected = bruteForceMatching(distances, boxes, 0, new boolean[4]);
+            assertEquals(expected, distances.lowerBound(boxes, count));
+            assertEquals(expected, matching.lowerBound(boxes, count));
+        }
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testTunnels() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #########
+                #A.a....#
+                ####.####
+                   #.#
+                   #@#
+                   ###
+                """);
+        assertTrue(gameMap.isTunnel(Position.of(2, 1), Direction.RIGHT));
+        assertTrue(gameMap.isTunnel(Position.of(2, 1), Direction.LEFT));
+        assertFalse(gameMap.isTunnel(Position.of(2, 1), Direction.UP));
+        assertTrue(gameMap.isTunnel(Position.of(4, 3), Direction.DOWN));
+        assertFalse(gameMap.isTunnel(Position.of(4, 3), Direction.RIGHT));
+        // the corridor opens downwards here
+        assertFalse(gameMap.isTunnel(Position.of(4, 1), Direction.RIGHT));
+        assertFalse(gameMap.isTunnel(Position.of(0, 0), Direction.RIGHT));
+        assertThrows(IndexOutOfBoundsException.class, () -> gameMap.isTunnel(Position.of(9, 0), Direction.UP));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testGoalRooms() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #A....#
+                #.a.a.#
+                #.....#
+                ###.###
+                  #.#
+                ###.###
+                #.....#
+                #.....#
+                #@.@..#
+                #######
+                """);
+        final var rooms = gameMap.getGoalRooms();
+        assertSame(rooms, gameMap.getGoalRooms());
+        assertEquals(1, rooms.size());
+        final var room = rooms.get(0);
+        // the door next to the room is the entrance, not the cells of the corridor before it
+        assertEquals(Position.of(3, 6), room.entrance());
+        assertEquals(Direction.DOWN, room.direction());
+        assertEquals(15, room.cells().size());
+        assertFalse(room.cells().contains(room.entrance()));
+        // the farther destination is filled first, so that the box for the nearer one does not block it
+        assertEquals(List.of(Position.of(1, 9), Position.of(3, 9)), room.fillOrder());
+        assertEquals(List.of(Direction.DOWN, Direction.DOWN, Direction.DOWN), room.routes().get(1));
+        assertEquals(5, room.routes().get(0).size());
+        int x = room.entrance().x();
+        int y = room.entrance().y();
+        for (Direction direction : room.routes().get(0)) {
+            x += direction.getDx();
+            y += direction.getDy();
+        }
+        assertEquals(Position.of(1, 9), Position.of(x, y));
+
+        // a second way into the room means it has no door any more
+        gameMap.putEntity(Position.of(5, 4), Entities.empty());
+        gameMap.putEntity(Position.of(5, 5), Entities.empty());
+        gameMap.putEntity(Position.of(5, 6), Entities.empty());
+        assertNotSame(rooms, gameMap.getGoalRooms());
+        assertEquals(List.of(), gameMap.getGoalRooms());
+    }
+
+    private static int bruteForceMatching(PushDistances distances, int[] boxes, int next, boolean[] used) {
+        if (next == boxes.length) {
+            return 0;
+        }
+        int best = PushDistances.UNREACHABLE;
+        for (int destination = 0; destination < used.length; destination++) {
+            final int distance = distances.getDistance(destination, boxes[next]);
+            if (used[destination] || distance == PushDistances.UNREACHABLE) {
+                continue;
+            }
+            used[destination] = true;
+            final int rest = bruteForceMatching(distances, boxes, next + 1, used);
+            used[destination] = false;
+            if (rest != PushDistances.UNREACHABLE) {
+                best = Math.min(best, distance + rest);
+            }
+        }
+        return best;
+    }
 }
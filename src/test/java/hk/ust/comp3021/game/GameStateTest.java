@@ -1,5 +1,6 @@
 package hk.ust.comp3021.game;
 
+import hk.ust.comp3021.actions.Direction;
 import hk.ust.comp3021.entities.*;
 import hk.ust.comp3021.utils.ShouldNotReachException;
 import hk.ust.comp3021.utils.TestExtension;
@@ -9,10 +10,16 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -83,6 +90,114 @@ class GameStateTest {
         assertTrue(gameState.isWin());
     }
 
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testWinUpdatedByMoveAndUndo() {
+        final var testMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #A.a@.#
+                #..@a.#
+                #######
+                """);
+        final var gameState = new GameState(testMap);
+        assertFalse(gameState.isWin());
+
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.checkpoint();
+        assertFalse(gameState.isWin());
+        gameState.move(Position.of(4, 2), Position.of(3, 2));
+        gameState.checkpoint();
+        assertTrue(gameState.isWin());
+
+        // pushing a box off its destination
+        gameState.move(Position.of(4, 1), Position.of(5, 1));
+        gameState.checkpoint();
+        assertFalse(gameState.isWin());
+
+        gameState.undo();
+        assertTrue(gameState.isWin());
+        gameState.undo();
+        assertFalse(gameState.isWin());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testBoxPositionsByIdFollowMoveAndUndo() {
+        final var testMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #A.a@.#
+                #B.b@a#
+                #..@..#
+                #######
+                """);
+        final var gameState = new GameState(testMap);
+        assertEquals(Set.of(Position.of(3, 1), Position.of(5, 2)), new HashSet<>(gameState.getBoxPositionsById(0)));
+        assertEquals(List.of(Position.of(3, 2)), gameState.getBoxPositionsById(1));
+        assertEquals(List.of(), gameState.getBoxPositionsById(2));
+        assertEquals(List.of(), gameState.getBoxPositionsById(-1));
+
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(1, 1), Position.of(3, 1));
+        gameState.checkpoint();
+        assertEquals(Set.of(Position.of(4, 1), Position.of(5, 2)), new HashSet<>(gameState.getBoxPositionsById(0)));
+        assertEquals(Position.of(3, 1), gameState.getPlayerPositionById(0));
+
+        gameState.undo();
+        assertEquals(Set.of(Position.of(3, 1), Position.of(5, 2)), new HashSet<>(gameState.getBoxPositionsById(0)));
+        assertEquals(Position.of(1, 1), gameState.getPlayerPositionById(0));
+        assertEquals(Position.of(1, 2), gameState.getPlayerPositionById(1));
+        assertNull(gameState.getPlayerPositionById(26));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testReachableRegionFollowsPushesAndOtherPlayers() {
+        final var testMap = TestHelper.parseGameMap("""
+                233
+                ########
+                #A.#..@#
+                #..a..@#
+                #B.#.b.#
+                ########
+                """);
+        final var gameState = new GameState(testMap);
+        // the box closes the left room, which player B shares with player A
+        assertEquals(5, gameState.getReachableRegion(0).cardinality());
+        assertTrue(gameState.getReachableRegion(0).get(8 + 1));
+        assertFalse(gameState.getReachableRegion(0).get(3 * 8 + 1));
+        assertFalse(gameState.isReachable(0, Position.of(4, 1)));
+        assertEquals(Position.of(1, 1), gameState.getNormalizedPlayerPosition(0));
+
+        // walking within the region keeps it, but changes the region of the other player
+        gameState.move(Position.of(1, 1), Position.of(2, 2));
+        assertEquals(Position.of(1, 1), gameState.getNormalizedPlayerPosition(0));
+        assertTrue(gameState.isReachable(0, Position.of(1, 1)));
+        assertTrue(gameState.isReachable(1, Position.of(1, 1)));
+        assertFalse(gameState.isReachable(1, Position.of(2, 2)));
+        gameState.checkpoint();
+
+        // pushing the box twice opens the right room
+        gameState.move(Position.of(3, 2), Position.of(4, 2));
+        gameState.move(Position.of(2, 2), Position.of(3, 2));
+        assertFalse(gameState.isReachable(0, Position.of(6, 1)));
+        gameState.move(Position.of(4, 2), Position.of(5, 2));
+        gameState.move(Position.of(3, 2), Position.of(4, 2));
+        gameState.checkpoint();
+        assertTrue(gameState.isReachable(0, Position.of(6, 1)));
+        assertFalse(gameState.isReachable(0, Position.of(5, 3)));
+        assertEquals(13, gameState.getReachableRegion(0).cardinality());
+
+        gameState.undo();
+        assertFalse(gameState.isReachable(0, Position.of(6, 1)));
+        assertEquals(5, gameState.getReachableRegion(0).cardinality());
+
+        assertTrue(gameState.getReachableRegion(5).isEmpty());
+        assertNull(gameState.getNormalizedPlayerPosition(5));
+        assertFalse(gameState.isReachable(5, Position.of(1, 1)));
+    }
+
     @Tag(TestKind.PUBLIC)
     @Test
     void testMove() {
@@ -99,6 +214,26 @@ class GameStateTest {
         assertEquals(Position.of(2, 1), gameState.getPlayerPositionById(0));
     }
 
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testGetEntityReturnsSharedEntities() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                ######
+                #A.a@#
+                #..a@#
+                ######
+                """
+        ));
+        gameState.move(Position.of(1, 1), Position.of(2, 1));
+
+        assertSame(Entities.empty(), gameState.getEntity(Position.of(1, 1)));
+        assertSame(Entities.player(0), gameState.getEntity(Position.of(2, 1)));
+        assertSame(Entities.box(0), gameState.getEntity(Position.of(3, 2)));
+        assertSame(Entities.wall(), gameState.getEntity(Position.of(0, 0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> gameState.getEntity(Position.of(6, 1)));
+    }
+
     @Tag(TestKind.PUBLIC)
     @Test
     void testPushBox() {
@@ -169,6 +304,64 @@ class GameStateTest {
         assertEquals(232, gameState.getUndoQuota().orElse(null));
     }
 
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testUndoRevertsCheckpointsInOrder() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                -1
+                #######
+                #.Aa.@#
+                #..a.@#
+                #######
+                """
+        ));
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        gameState.checkpoint();
+        gameState.move(Position.of(4, 1), Position.of(5, 1));
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.checkpoint();
+
+        gameState.undo();
+        assertEquals(Position.of(3, 1), gameState.getPlayerPositionById(0));
+        assertInstanceOf(Box.class, gameState.getEntity(Position.of(4, 1)));
+        assertInstanceOf(Empty.class, gameState.getEntity(Position.of(5, 1)));
+
+        gameState.undo();
+        assertEquals(Position.of(2, 1), gameState.getPlayerPositionById(0));
+        assertInstanceOf(Player.class, gameState.getEntity(Position.of(2, 1)));
+        assertInstanceOf(Box.class, gameState.getEntity(Position.of(3, 1)));
+        assertInstanceOf(Empty.class, gameState.getEntity(Position.of(4, 1)));
+        assertTrue(gameState.getUndoQuota().isEmpty());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testUndoLimitKeepsOnlyRecentCheckpoints() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                2
+                #########
+                #A......#
+                #a.....@#
+                #########
+                """
+        ));
+        for (int x = 1; x < 6; x++) {
+            gameState.move(Position.of(x, 1), Position.of(x + 1, 1));
+            gameState.checkpoint();
+        }
+
+        gameState.undo();
+        gameState.undo();
+        assertEquals(Position.of(4, 1), gameState.getPlayerPositionById(0));
+        assertEquals(0, gameState.getUndoQuota().orElse(null));
+
+        // the older checkpoints have been dropped
+        gameState.undo();
+        assertEquals(Position.of(4, 1), gameState.getPlayerPositionById(0));
+        assertInstanceOf(Empty.class, gameState.getEntity(Position.of(1, 1)));
+    }
+
     @Tag(TestKind.HIDDEN)
     @Test
     void testUndoWhenThereIsMoveButNoCheckpoint() {
@@ -203,6 +396,243 @@ class GameStateTest {
         assertEquals(233, gameState.getUndoQuota().orElse(null));
     }
 
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testLegalMoves() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                #######
+                #.Aa.@#
+                #.Bb@.#
+                #..#..#
+                #######
+                """));
+        final var hash = gameState.getStateHash();
+        final var moves = gameState.legalMoves(0);
+        // up is a wall, down is another player
+        assertFalse(GameState.isLegal(moves, Direction.UP));
+        assertFalse(GameState.isLegal(moves, Direction.DOWN));
+        assertTrue(GameState.isLegal(moves, Direction.LEFT));
+        assertFalse(GameState.isPush(moves, Direction.LEFT));
+        assertTrue(GameState.isLegal(moves, Direction.RIGHT));
+        assertTrue(GameState.isPush(moves, Direction.RIGHT));
+        assertEquals(hash, gameState.getStateHash());
+
+        final var otherMoves = gameState.legalMoves(1);
+        assertFalse(GameState.isLegal(otherMoves, Direction.UP));
+        assertTrue(GameState.isLegal(otherMoves, Direction.DOWN));
+        assertTrue(GameState.isPush(otherMoves, Direction.RIGHT));
+
+        // player A cannot push the box of player B
+        gameState.move(Position.of(2, 2), Position.of(2, 3));
+        gameState.move(Position.of(2, 1), Position.of(2, 2));
+        assertFalse(GameState.isLegal(gameState.legalMoves(0), Direction.RIGHT));
+        assertFalse(GameState.isLegal(gameState.legalMoves(1), Direction.RIGHT));
+        assertTrue(GameState.isLegal(gameState.legalMoves(1), Direction.LEFT));
+
+        // a box cannot be pushed into a wall
+        gameState.move(Position.of(3, 1), Position.of(5, 1));
+        gameState.move(Position.of(2, 2), Position.of(4, 1));
+        assertFalse(GameState.isLegal(gameState.legalMoves(0), Direction.RIGHT));
+        assertTrue(GameState.isLegal(gameState.legalMoves(0), Direction.LEFT));
+        assertEquals(0, gameState.legalMoves(5));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testStateHashAfterMove() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                #######
+                #A.a@.#
+                #B.b@.#
+                #######
+                """));
+        final var initial = gameState.getStateHash();
+        // failing moves leave the hash unchanged: a wall, another player, and a missing player
+        assertEquals(initial, gameState.getStateHashAfter(0, Direction.UP));
+        assertEquals(initial, gameState.getStateHashAfter(0, Direction.DOWN));
+        assertEquals(initial, gameState.getStateHashAfter(26, Direction.RIGHT));
+
+        final var walked = gameState.getStateHashAfter(0, Direction.RIGHT);
+        assertNotEquals(initial, walked);
+        gameState.move(Position.of(1, 1), Position.of(2, 1));
+        assertEquals(walked, gameState.getStateHash());
+        assertEquals(gameState.getStateHash(), gameState.getStateHashAfter(1, Direction.LEFT));
+
+        final var pushed = gameState.getStateHashAfter(0, Direction.RIGHT);
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        assertEquals(pushed, gameState.getStateHash());
+        // the box is blocked by the wall
+        gameState.move(Position.of(4, 1), Position.of(5, 1));
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        assertEquals(gameState.getStateHash(), gameState.getStateHashAfter(0, Direction.RIGHT));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testStateHashFollowsPlacement() {
+        final var mapText = """
+                233
+                #######
+                #A.a@.#
+                #..@a.#
+                #######
+                """;
+        final var gameState = new GameState(TestHelper.parseGameMap(mapText));
+        final var initialHash = gameState.getStateHash();
+        assertEquals(initialHash, new GameState(TestHelper.parseGameMap(mapText)).getStateHash());
+
+        gameState.move(Position.of(1, 1), Position.of(2, 1));
+        gameState.checkpoint();
+        assertNotEquals(initialHash, gameState.getStateHash());
+        gameState.move(Position.of(2, 1), Position.of(2, 2));
+        gameState.checkpoint();
+        gameState.move(Position.of(2, 2), Position.of(1, 2));
+        gameState.checkpoint();
+        gameState.move(Position.of(1, 2), Position.of(1, 1));
+        gameState.checkpoint();
+        // back at the start by another way
+        assertEquals(initialHash, gameState.getStateHash());
+
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(1, 1), Position.of(3, 1));
+        gameState.checkpoint();
+        final var pushedHash = gameState.getStateHash();
+        gameState.undo();
+        assertEquals(initialHash, gameState.getStateHash());
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(1, 1), Position.of(3, 1));
+        assertEquals(pushedHash, gameState.getStateHash());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testStateHashCollisionRate() {
+        final var map = TestHelper.parseGameMap("""
+                -1
+                #########
+                #A......#
+                #..a.b..#
+                #...B...#
+                #.@...@.#
+                #########
+                """);
+        final int[][] directions = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
+        final var statesByHash = new HashMap<Long, String>();
+        int collisions = 0;
+        for (int seed = 0; seed < 20; seed++) {
+            final var gameState = new GameState(map);
+            final var random = new Random(seed);
+            for (int step = 0; step < 1000; step++) {
+                if (random.nextInt(10) == 0) {
+                    gameState.undo();
+                } else {
+                    final var id = random.nextInt(2);
+                    final var direction = directions[random.nextInt(4)];
+                    final var from = gameState.getPlayerPositionById(id);
+                    assertNotNull(from);
+                    final var to = Position.of(from.x() + direction[0], from.y() + direction[1]);
+                    final var beyond = Position.of(to.x() + direction[0], to.y() + direction[1]);
+                    if (gameState.getEntity(to) instanceof Box box && box.getPlayerId() == id
+                            && gameState.getEntity(beyond) instanceof Empty) {
+                        gameState.move(to, beyond);
+                    }
+                    if (gameState.getEntity(to) instanceof Empty) {
+                        gameState.move(from, to);
+                        gameState.checkpoint();
+                    }
+                }
+                final var board = render(gameState);
+                final var previous = statesByHash.putIfAbsent(gameState.getStateHash(), board);
+                if (previous != null && !previous.equals(board)) {
+                    collisions++;
+                }
+            }
+        }
+        // thousands of distinct states should be far from colliding in a 64-bit hash
+        assertTrue(statesByHash.size() > 1000);
+        assertEquals(0, collisions);
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testConcurrentGamesDoNotInterfere() throws Exception {
+        final var mapText = """
+                -1
+                #########
+                #A......#
+                #..a.b..#
+                #...B...#
+                #.@...@.#
+                #########
+                """;
+        final var sharedMap = TestHelper.parseGameMap(mapText);
+        final var numOfGames = 64;
+        final var executor = Executors.newFixedThreadPool(8);
+        try {
+            final var futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < numOfGames; i++) {
+                final var seed = i;
+                // half of the games share one map, the others parse their own
+                final var map = (i % 2 == 0) ? sharedMap : TestHelper.parseGameMap(mapText);
+                futures.add(executor.submit(() -> randomWalk(new GameState(map), seed)));
+            }
+            for (int i = 0; i < numOfGames; i++) {
+                final var expected = randomWalk(new GameState(TestHelper.parseGameMap(mapText)), i);
+                assertEquals(expected, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // the original map is never modified by any game
+        assertInstanceOf(Player.class, sharedMap.getEntity(Position.of(1, 1)));
+        assertInstanceOf(Box.class, sharedMap.getEntity(Position.of(3, 2)));
+    }
+
+    /**
+     * Randomly moves players into empty cells, with occasional undo, and renders the final board.
+     */
+    private static String randomWalk(GameState gameState, long seed) {
+        final var random = new Random(seed);
+        final int[][] directions = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
+        for (int step = 0; step < 2000; step++) {
+            if (random.nextInt(10) == 0) {
+                gameState.undo();
+                continue;
+            }
+            final var id = random.nextInt(2);
+            final var direction = directions[random.nextInt(4)];
+            final var from = gameState.getPlayerPositionById(id);
+            assertNotNull(from);
+            final var to = Position.of(from.x() + direction[0], from.y() + direction[1]);
+            if (gameState.getEntity(to) instanceof Empty) {
+                gameState.move(from, to);
+                gameState.checkpoint();
+            }
+        }
+        return render(gameState);
+    }
+
+    private static String render(GameState gameState) {
+        final var builder = new StringBuilder();
+        for (int y = 0; y < gameState.getMapMaxHeight(); y++) {
+            for (int x = 0; x < gameState.getMapMaxWidth(); x++) {
+                final var entity = gameState.getEntity(Position.of(x, y));
+                builder.append(switch (entity) {
+                    case Wall ignored -> '#';
+                    case Box b -> (char) ('a' + b.getPlayerId());
+                    case Player p -> (char) ('A' + p.getId());
+                    case Empty ignored -> '.';
+                    case null -> ' ';
+                });
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
     private Entity generateEntity(int key) {
         return switch (key % 4) {
             case 0 -> new Box(0);
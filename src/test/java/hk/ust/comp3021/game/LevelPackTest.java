@@ -0,0 +1,142 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Box;
+import hk.ust.comp3021.entities.Empty;
+import hk.ust.comp3021.entities.Player;
+import hk.ust.comp3021.entities.Wall;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class LevelPackTest {
+
+    private static final String FIRST = """
+            233
+            ######
+            #A.a@#
+            ######
+            """;
+    private static final String SECOND = """
+            -1
+            #######
+            #A.a.@#
+            #..b.@#
+            #.B...#
+            #######
+            """;
+
+    @TempDir
+    private Path tempDir;
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testNativePack() throws IOException {
+        final var file = tempDir.resolve("levels.pack");
+        Files.writeString(file, FIRST + "\n\n" + SECOND);
+
+        try (var pack = LevelPack.open(file)) {
+            assertEquals(LevelPack.Format.NATIVE, pack.getFormat());
+            assertEquals(2, pack.size());
+            assertEquals(FIRST, pack.getLevelText(0));
+            assertEquals(SECOND, pack.getLevelText(1));
+
+            final var second = pack.getLevel(1);
+            assertEquals(7, second.getMaxWidth());
+            assertEquals(5, second.getMaxHeight());
+            assertEquals(-1, second.getUndoLimit().orElse(null));
+            assertEquals(Set.of(0, 1), second.getPlayerIds());
+            assertThrows(IndexOutOfBoundsException.class, () -> pack.getLevel(2));
+        }
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testXsbPack() throws IOException {
+        final var file = tempDir.resolve("levels.xsb");
+        Files.writeString(file, """
+                ; a collection
+                Title: First
+
+                  #####
+                ###   #
+                #.@$  #
+                ##### #
+                    ###
+
+                ; second
+                #####
+                #+$*#
+                #####
+                """);
+
+        try (var pack = LevelPack.open(file)) {
+            assertEquals(LevelPack.Format.XSB, pack.getFormat());
+            assertEquals(2, pack.size());
+
+            final var first = pack.getLevel(0);
+            assertEquals(7, first.getMaxWidth());
+            assertEquals(5, first.getMaxHeight());
+            assertEquals(-1, first.getUndoLimit().orElse(null));
+            assertEquals(Set.of(Position.of(1, 2)), first.getDestinations());
+            assertInstanceOf(Player.class, first.getEntity(Position.of(2, 2)));
+            assertInstanceOf(Box.class, first.getEntity(Position.of(3, 2)));
+            assertInstanceOf(Empty.class, first.getEntity(Position.of(4, 1)));
+            assertInstanceOf(Wall.class, first.getEntity(Position.of(2, 0)));
+            assertNull(first.getEntity(Position.of(0, 0)));
+
+            final var second = pack.getLevel(1);
+            assertEquals(Set.of(Position.of(1, 1), Position.of(3, 1)), second.getDestinations());
+            assertInstanceOf(Player.class, second.getEntity(Position.of(1, 1)));
+            assertInstanceOf(Box.class, second.getEntity(Position.of(3, 1)));
+        }
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testIndexFile() throws IOException {
+        final var file = tempDir.resolve("levels.pack");
+        Files.writeString(file, FIRST + "\n" + SECOND);
+        try (var pack = LevelPack.open(file)) {
+            pack.writeIndex();
+        }
+        assertTrue(Files.isRegularFile(LevelPack.indexFileOf(file)));
+
+        try (var pack = LevelPack.open(file)) {
+            assertEquals(2, pack.size());
+            assertEquals(SECOND, pack.getLevelText(1));
+        }
+
+        // a stale index is ignored
+        Files.writeString(file, SECOND);
+        try (var pack = LevelPack.open(file)) {
+            assertEquals(1, pack.size());
+            assertEquals(SECOND, pack.getLevelText(0));
+        }
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testInvalidXsbLevel() {
+        assertThrows(IllegalArgumentException.class, () -> LevelPack.parseXsb("""
+                #####
+                #@$ #
+                #####
+                """));
+        assertThrows(IllegalArgumentException.class, () -> LevelPack.parseXsb("""
+                ######
+                #@$.@#
+                ######
+                """));
+    }
+}
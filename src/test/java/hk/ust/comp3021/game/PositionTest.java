@@ -0,0 +1,41 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class PositionTest {
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testSmallPositionsAreCached() {
+        assertSame(Position.of(3, 4), Position.of(3, 4));
+        assertEquals(new Position(3, 4), Position.of(3, 4));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPositionsOutsideCache() {
+        assertEquals(new Position(-1, 4), Position.of(-1, 4));
+        assertEquals(new Position(233333, 2), Position.of(233333, 2));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPacking() {
+        final int[][] coordinates = {{0, 0}, {3, 4}, {-1, 7}, {5, -2}, {Integer.MAX_VALUE, Integer.MIN_VALUE}};
+        for (int[] c : coordinates) {
+            final var packed = Position.pack(c[0], c[1]);
+            assertEquals(c[0], Position.unpackX(packed));
+            assertEquals(c[1], Position.unpackY(packed));
+            assertEquals(Position.of(c[0], c[1]), Position.ofPacked(packed));
+            assertEquals(packed, Position.of(c[0], c[1]).packed());
+        }
+        assertNotEquals(Position.pack(1, 2), Position.pack(2, 1));
+    }
+}
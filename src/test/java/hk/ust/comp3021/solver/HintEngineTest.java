@@ -0,0 +1,290 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.ActionResult;
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.entities.Box;
+import hk.ust.comp3021.entities.Entity;
+import hk.ust.comp3021.game.AbstractSokobanGame;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.Position;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
+import hk.ust.comp3021.utils.TestKind;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class HintEngineTest {
+
+    private static final Duration BUDGET = Duration.ofSeconds(1);
+
+    private static final String map01 = """
+            5
+             ######
+            ##...A#
+            #@aaa.#
+            #@@a.#
+            #.@..#
+            ######
+            """;
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testHintInCorridor() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                #######
+                #A.a.@#
+                #######
+                """));
+        final var hint = new HintEngine().hint(gameState, 0, BUDGET);
+
+        assertTrue(hint.isPresent());
+        assertInstanceOf(Move.Right.class, hint.get());
+        assertEquals(0, hint.get().getInitiator());
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testFollowingHintsWins() {
+        final var gameState = new GameState(TestHelper.parseGameMap(map01));
+        final var game = new SokobanGameForTesting(gameState);
+        final var hintEngine = new HintEngine();
+
+        var hint = hintEngine.hint(gameState, 0, BUDGET);
+        // once the plan is known, following it needs no more searching
+        for (int step = 0; hint.isPresent() && step < 1000; step++) {
+            assertInstanceOf(ActionResult.Success.class, game.feedActionForProcessing(hint.get()));
+            hint = hintEngine.hint(gameState, 0, Duration.ZERO);
+        }
+        assertTrue(gameState.isWin());
+        assertTrue(hintEngine.hint(gameState, 0, BUDGET).isEmpty());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testRepeatedHintIsStable() {
+        final var gameState = new GameState(TestHelper.parseGameMap(map01));
+        final var hintEngine = new HintEngine();
+
+        final var first = hintEngine.hint(gameState, 0, BUDGET);
+        final var second = hintEngine.hint(gameState, 0, Duration.ZERO);
+        assertTrue(first.isPresent());
+        assertSame(first.get(), second.get());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testHintAfterLeavingPlan() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                #######
+                #.....#
+                #.A.a.#
+                #....@#
+                #######
+                """));
+        final var game = new SokobanGameForTesting(gameState);
+        final var hintEngine = new HintEngine();
+        assertTrue(hintEngine.hint(gameState, 0, BUDGET).isPresent());
+
+        // walk away from the plan, then follow the hints again
+        game.feedActionForProcessing(new Move.Up(0));
+        var hint = hintEngine.hint(gameState, 0, BUDGET);
+        for (int step = 0; hint.isPresent() && step < 100; step++) {
+            assertInstanceOf(ActionResult.Success.class, game.feedActionForProcessing(hint.get()));
+            hint = hintEngine.hint(gameState, 0, BUDGET);
+        }
+        assertTrue(gameState.isWin());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testHintWithoutTimeToSolve() {
+        final var gameState = new GameState(TestHelper.parseGameMap(map01));
+        final var game = new SokobanGameForTesting(gameState);
+
+        final var hint = new HintEngine().hint(gameState, 0, Duration.ZERO);
+        assertTrue(hint.isPresent());
+        assertInstanceOf(ActionResult.Success.class, game.feedActionForProcessing(hint.get()));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testHintForSecondPlayer() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                ######
+                #Aa.@#
+                #Bb.@#
+                ######
+                """));
+        final var hint = new HintEngine().hint(gameState, 1, BUDGET);
+
+        assertTrue(hint.isPresent());
+        assertInstanceOf(Move.Right.class, hint.get());
+        assertEquals(1, hint.get().getInitiator());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testFollowingHintsOfSeveralPlayers() {
+        final var gameState = new CountingGameState("""
+                233
+                #######
+                #A.a.@#
+                #######
+                #B.b.@#
+                #######
+                """);
+        final var reads = gameState.reads;
+        final var game = new SokobanGameForTesting(gameState);
+        final var hintEngine = new HintEngine();
+
+        assertTrue(hintEngine.hint(gameState, 0, BUDGET).isPresent());
+        // the players take turns, unlike the plan, which needs no more solving
+        for (int step = 0; !gameState.isWin() && step < 100; step++) {
+            final int playerId = step % 2 == 0 ? 1 : 0;
+            reads.set(0);
+            final var hint = hintEngine.hint(gameState, playerId, Duration.ZERO);
+            assertEquals(0, reads.get());
+            if (hint.isPresent()) {
+                assertEquals(playerId, hint.get().getInitiator());
+                assertInstanceOf(ActionResult.Success.class, game.feedActionForProcessing(hint.get()));
+            }
+        }
+        assertTrue(gameState.isWin());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testRepeatedHintContinuesSearch() {
+        final var gameState = new CountingGameState(map01);
+        final var game = new SokobanGameForTesting(gameState);
+        final var hintEngine = new HintEngine();
+
+        assertTrue(hintEngine.hint(gameState, 0, Duration.ZERO).isPresent());
+        // asking again in the same state goes on with the same solver instead of reading the game again
+        gameState.reads.set(0);
+        assertTrue(hintEngine.hint(gameState, 0, Duration.ZERO).isPresent());
+        var hint = hintEngine.hint(gameState, 0, BUDGET);
+        assertEquals(0, gameState.reads.get());
+
+        for (int step = 0; hint.isPresent() && step < 1000; step++) {
+            assertInstanceOf(ActionResult.Success.class, game.feedActionForProcessing(hint.get()));
+            hint = hintEngine.hint(gameState, 0, Duration.ZERO);
+        }
+        assertTrue(gameState.isWin());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testHintOnLargeMapWithinBudget() {
+        final var builder = new StringBuilder("233\n");
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                final boolean slot = x > 1 && x % 2 == 0 && x / 2 <= 40;
+                if (y == 0 || x == 0 || y == 99 || x == 99) {
+                    builder.append('#');
+                } else if (y == 1 && x == 1) {
+                    builder.append('A');
+                } else if (slot && y == 2) {
+                    builder.append('a');
+                } else if (slot && y == 98) {
+                    builder.append('@');
+                } else {
+                    builder.append('.');
+                }
+            }
+            builder.append('\n');
+        }
+        final var gameState = new GameState(TestHelper.parseGameMap(builder.toString()));
+        final var hintEngine = new HintEngine();
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            final long start = System.nanoTime();
+            final var hint = hintEngine.hint(gameState, 0, Duration.ofMillis(50));
+            // setting up the solver and falling back to a single push are part of the budget
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+            assertTrue(hint.isPresent());
+        }
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testHintTowardsNextPushOfSeveralPlayers() {
+        // the players share the room, so they are solved jointly
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                #######
+                #A.a.@#
+                #.....#
+                #B.b.@#
+                #######
+                """));
+        final var game = new SokobanGameForTesting(gameState);
+        final var hintEngine = new HintEngine();
+
+        // walk behind the box and push it twice, without walking back in between
+        for (int step = 0; step < 3; step++) {
+            final var hint = hintEngine.hint(gameState, 0, BUDGET);
+            assertInstanceOf(Move.Right.class, hint.orElseThrow());
+            assertInstanceOf(ActionResult.Success.class, game.feedActionForProcessing(hint.get()));
+        }
+        assertInstanceOf(Box.class, gameState.getEntity(Position.of(5, 1)));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testNoHintWhenDeadlocked() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+                233
+                ######
+                #A..a#
+                #...@#
+                ######
+                """));
+        assertTrue(new HintEngine().hint(gameState, 0, BUDGET).isEmpty());
+    }
+
+    /**
+     * A game state counting the reads of its entities, which is how the state is read into a solver.
+     */
+    private static class CountingGameState extends GameState {
+        private final AtomicInteger reads = new AtomicInteger();
+
+        CountingGameState(String mapText) {
+            super(TestHelper.parseGameMap(mapText));
+        }
+
+        @Override
+        public @Nullable Entity getEntity(@NotNull Position position) {
+            reads.incrementAndGet();
+            return super.getEntity(position);
+        }
+    }
+
+    private static class SokobanGameForTesting extends AbstractSokobanGame {
+
+        protected SokobanGameForTesting(GameState gameState) {
+            super(gameState);
+        }
+
+        @Override
+        public void run() {
+        }
+
+        public ActionResult feedActionForProcessing(Action action) {
+            return processAction(action);
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.entities.Entities;
+import hk.ust.comp3021.game.BitBoard;
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.MoveOutcome;
+import hk.ust.comp3021.game.Position;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class SolverTest {
+
+    private static final Duration BUDGET = Duration.ofSeconds(1);
+
+    private static final String map01 = """
+            5
+             ######
+            ##...A#
+            #@aaa.#
+            #@@a.#
+            #.@..#
+            ######
+            """;
+
+    /**
+     * Play the moves on a bitboard of the map and check that every move succeeds and the game is won at the end.
+     *
+     * @return the number of pushes.
+     */
+    private static int replay(GameMap gameMap, List<Move> moves) {
+        final var bitBoard = new BitBoard(gameMap);
+        int pushes = 0;
+        for (Move move : moves) {
+            final var outcome = bitBoard.move(move.getInitiator(), move.getDirection());
+            assertTrue(outcome.isSuccess());
+            if (outcome == MoveOutcome.PUSHED) {
+                pushes++;
+            }
+        }
+        assertTrue(bitBoard.isWin());
+        return pushes;
+    }
+
+    /**
+     * @return a square room with a row of boxes near the top and their destinations in a row near the bottom,
+     * large enough that a single expansion takes a while.
+     */
+    private static String largeRoom(int size, int boxes) {
+        final var builder = new StringBuilder("-1\n");
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final boolean slot = x > 1 && x % 2 == 0 && x / 2 <= boxes;
+                if (y == 0 || x == 0 || y == size - 1 || x == size - 1) {
+                    builder.append('#');
+                } else if (y == 1 && x == 1) {
+                    builder.append('A');
+                } else if (slot && y == 2) {
+                    builder.append('a');
+                } else if (slot && y == size - 2) {
+                    builder.append('@');
+                } else {
+                    builder.append('.');
+                }
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testSolveCorridor() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #A.a.@#
+                #######
+                """);
+        final var result = new Solver(gameMap).solve(BUDGET);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(2, solved.getPushes());
+        assertEquals(3, solved.getMoves().size());
+        assertEquals(2, replay(gameMap, solved.getMoves()));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testSolveBuiltInMap() {
+        final var gameMap = TestHelper.parseGameMap(map01);
+        final var result = new Solver(gameMap).solve(BUDGET);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(solved.getPushes(), replay(gameMap, solved.getMoves()));
+        assertTrue(solved.getExploredStates() > 0);
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPushesAreMinimal() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #A....#
+                #.a...#
+                #....@#
+                #######
+                """);
+        final var result = new Solver(gameMap).solve(BUDGET);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(4, solved.getPushes());
+        assertEquals(4, replay(gameMap, solved.getMoves()));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testAlreadySolved() {
+        final var gameMap = new GameMap(3, 1, Set.of(), 233);
+        gameMap.putEntity(Position.of(0, 0), Entities.wall());
+        gameMap.putEntity(Position.of(1, 0), Entities.player(0));
+        gameMap.putEntity(Position.of(2, 0), Entities.wall());
+        final var result = new Solver(gameMap).solve(BUDGET);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(List.of(), solved.getMoves());
+        assertEquals(0, solved.getPushes());
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testUnsolvable() {
+        // the box in the corner can never be moved
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ######
+                #a..@#
+                #..A.#
+                ######
+                """);
+        assertInstanceOf(SolverResult.Unsolvable.class, new Solver(gameMap).solve(BUDGET));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testUnsolvableAfterSearch() {
+        // each box can reach the destination on its own, but the two boxes block each other in the corridor
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ########
+                #A.aa.@#
+                ######@#
+                #......#
+                ########
+                """);
+        final var result = new Solver(gameMap).solve(BUDGET);
+        assertInstanceOf(SolverResult.Unsolvable.class, result);
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testTimeout() {
+        final var gameMap = TestHelper.parseGameMap(map01);
+        final var result = new Solver(gameMap).solve(Duration.ZERO);
+
+        assertInstanceOf(SolverResult.Timeout.class, result);
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testSolveContinuesAfterTimeout() {
+        final var gameMap = TestHelper.parseGameMap(map01);
+        final var expected = assertInstanceOf(SolverResult.Solved.class, new Solver(gameMap).solve(BUDGET));
+
+        final var solver = new Solver(gameMap);
+        SolverResult result = solver.solve(Duration.ofNanos(1));
+        assertInstanceOf(SolverResult.Timeout.class, result);
+        for (int attempt = 0; attempt < 100000 && result instanceof SolverResult.Timeout; attempt++) {
+            final long explored = result.getExploredStates();
+            result = solver.solve(Duration.ofMillis(1));
+            // the search goes on from where it stopped instead of starting over
+            assertTrue(result.getExploredStates() >= explored);
+        }
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(expected.getPushes(), solved.getPushes());
+        assertEquals(solved.getPushes(), replay(gameMap, solved.getMoves()));
+
+        // a solved game is not searched again
+        final var again = assertInstanceOf(SolverResult.Solved.class, solver.solve(Duration.ZERO));
+        assertEquals(solved.getMoves(), again.getMoves());
+        assertEquals(0, again.getExploredStates());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testTimeoutOnLargeMap() {
+        final var solver = new Solver(TestHelper.parseGameMap(largeRoom(100, 40)));
+        for (SearchAlgorithm algorithm : SearchAlgorithm.values()) {
+            solver.setAlgorithm(algorithm);
+            final long start = System.nanoTime();
+            final var result = solver.solve(Duration.ofMillis(50));
+
+            assertInstanceOf(SolverResult.Timeout.class, result);
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+        }
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testParallelSolveFindsSamePushes() {
+        final var gameMap = TestHelper.parseGameMap(map01);
+        final var solver = new Solver(gameMap);
+        final var sequential = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+
+        for (int parallelism : new int[]{2, 4}) {
+            final var parallel = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET, parallelism));
+            assertEquals(sequential.getPushes(), parallel.getPushes());
+            assertEquals(parallel.getPushes(), replay(gameMap, parallel.getMoves()));
+        }
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testParallelUnsolvable() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ########
+                #A.aa.@#
+                ######@#
+                #......#
+                ########
+                """);
+        assertInstanceOf(SolverResult.Unsolvable.class, new Solver(gameMap).solve(BUDGET, 4));
+        assertThrows(IllegalArgumentException.class, () -> new Solver(gameMap).solve(BUDGET, 0));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testMacroMovesThroughTunnelAndGoalRoom() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #A....#
+                #.a.a.#
+                #.....#
+                #.....#
+                ###.###
+                  #.#
+                  #.#
+                  #.#
+                  #.#
+                ###.###
+                #.....#
+                #.....#
+                #@.@..#
+                #######
+                """);
+        final var solver = new Solver(gameMap);
+        final var withMacros = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+        solver.setMacroMoves(false);
+        final var withoutMacros = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+
+        assertEquals(withoutMacros.getPushes(), withMacros.getPushes());
+        assertEquals(withMacros.getPushes(), replay(gameMap, withMacros.getMoves()));
+        assertTrue(withMacros.getExploredStates() < withoutMacros.getExploredStates());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testParallelMacroMoves() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #########
+                #A......#
+                #.a.a.a.#
+                #.......#
+                ####.####
+                   #.#
+                   #.#
+                ####.####
+                #.......#
+                #.......#
+                #@.@.@..#
+                #########
+                """);
+        final var solver = new Solver(gameMap);
+        final var sequential = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+        final var parallel = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET, 4));
+        assertEquals(sequential.getPushes(), parallel.getPushes());
+        assertEquals(parallel.getPushes(), replay(gameMap, parallel.getMoves()));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testIterativeDeepeningFindsSamePushes() {
+        final var gameMap = TestHelper.parseGameMap(map01);
+        final var solver = new Solver(gameMap);
+        final var aStar = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+        solver.setAlgorithm(SearchAlgorithm.IDA_STAR);
+        final var idaStar = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+
+        assertEquals(aStar.getPushes(), idaStar.getPushes());
+        assertEquals(idaStar.getPushes(), replay(gameMap, idaStar.getMoves()));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testIterativeDeepeningUnsolvable() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ########
+                #A.aa.@#
+                ######@#
+                #......#
+                ########
+                """);
+        final var solver = new Solver(gameMap);
+        solver.setAlgorithm(SearchAlgorithm.IDA_STAR);
+        assertInstanceOf(SolverResult.Unsolvable.class, solver.solve(BUDGET));
+
+        final var timed = new Solver(TestHelper.parseGameMap(map01));
+        timed.setAlgorithm(SearchAlgorithm.IDA_STAR);
+        assertInstanceOf(SolverResult.Timeout.class, timed.solve(Duration.ZERO));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testBidirectionalFindsSamePushes() {
+        final var corridor = """
+                233
+                #######
+                #A....#
+                #.a.a.#
+                #.....#
+                ###.###
+                  #.#
+                  #.#
+                ###.###
+                #.....#
+                #@.@..#
+                #######
+                """;
+        for (String text : List.of(map01, corridor)) {
+            final var gameMap = TestHelper.parseGameMap(text);
+            final var solver = new Solver(gameMap);
+            solver.setMacroMoves(false);
+            final var aStar = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+            solver.setAlgorithm(SearchAlgorithm.BIDIRECTIONAL);
+            final var bidirectional = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+
+            assertEquals(aStar.getPushes(), bidirectional.getPushes());
+            assertEquals(bidirectional.getPushes(), replay(gameMap, bidirectional.getMoves()));
+        }
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testBidirectionalUnsolvable() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ########
+                #A.aa.@#
+                ######@#
+                #......#
+                ########
+                """);
+        final var solver = new Solver(gameMap);
+        solver.setAlgorithm(SearchAlgorithm.BIDIRECTIONAL);
+        assertInstanceOf(SolverResult.Unsolvable.class, solver.solve(BUDGET));
+
+        final var timed = new Solver(TestHelper.parseGameMap(map01));
+        timed.setAlgorithm(SearchAlgorithm.BIDIRECTIONAL);
+        assertInstanceOf(SolverResult.Timeout.class, timed.solve(Duration.ZERO));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testMemoryLimit() {
+        final var gameMap = TestHelper.parseGameMap(map01);
+        final var solver = new Solver(gameMap);
+        // room for a handful of states only
+        solver.setMemoryLimit(2048);
+        assertInstanceOf(SolverResult.OutOfMemory.class, solver.solve(BUDGET));
+        assertInstanceOf(SolverResult.OutOfMemory.class, solver.solve(BUDGET, 2));
+
+        solver.setAlgorithm(SearchAlgorithm.IDA_STAR);
+        final var solved = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+        assertEquals(solved.getPushes(), replay(gameMap, solved.getMoves()));
+
+        assertThrows(IllegalArgumentException.class, () -> solver.setMemoryLimit(0));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testSolveMultiplePlayers() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ######
+                #Aa.@#
+                #Bb.@#
+                ######
+                """);
+        final var result = new Solver(gameMap).solve(BUDGET);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(4, solved.getPushes());
+        assertEquals(4, replay(gameMap, solved.getMoves()));
+        assertEquals(Set.of(0, 1), solved.getMoves().stream().map(Move::getInitiator).collect(Collectors.toSet()));
+    }
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testSolveBuiltInMultiPlayerMap() {
+        final var gameMap = TestHelper.parseGameMap("""
+                -1
+                #############
+                #Aa.@.......@#
+                #a..........#
+                #..........b#
+                #@@.......bB#
+                #############
+                """);
+        final var result = new Solver(gameMap).solve(BUDGET);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(solved.getPushes(), replay(gameMap, solved.getMoves()));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPlayersStayAfterPushing() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ######
+                #Aa.@#
+                #Bb.@#
+                ######
+                """);
+        final var solved = assertInstanceOf(SolverResult.Solved.class, new Solver(gameMap).solve(BUDGET));
+        // nobody walks back to where the search keeps the players between pushes
+        assertEquals(4, solved.getMoves().size());
+
+        final var builtIn = TestHelper.parseGameMap("""
+                -1
+                #############
+                #Aa.@.......@#
+                #a..........#
+                #..........b#
+                #@@.......bB#
+                #############
+                """);
+        final var builtInSolved = assertInstanceOf(SolverResult.Solved.class, new Solver(builtIn).solve(BUDGET));
+        assertEquals(builtInSolved.getPushes(), replay(builtIn, builtInSolved.getMoves()));
+        assertTrue(builtInSolved.getMoves().size() <= 2 * builtInSolved.getPushes());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPushOntoOwnCell() {
+        // player 1 first pushes its box onto the cell it starts from, which is the smallest cell of its region
+        final var gameMap = TestHelper.parseGameMap("""
+                -1
+                ######
+                ##..@#
+                #..ba#
+                #.@BA#
+                ######
+                """);
+        final var solver = new Solver(gameMap);
+        for (SearchAlgorithm algorithm : SearchAlgorithm.values()) {
+            solver.setAlgorithm(algorithm);
+            final var solved = assertInstanceOf(SolverResult.Solved.class, solver.solve(BUDGET));
+            assertEquals(solved.getPushes(), replay(gameMap, solved.getMoves()));
+        }
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPlayerGetsInBeforeWayCloses() {
+        // player 1 has to enter the left column before player 0 closes it with its box, without being in anyone's way
+        final var gameMap = TestHelper.parseGameMap("""
+                -1
+                #######
+                #.#.@.#
+                #.##bB#
+                #.A.b.#
+                #.@a.@#
+                #######
+                """);
+        final var solved = assertInstanceOf(SolverResult.Solved.class, new Solver(gameMap).solve(BUDGET));
+        assertEquals(solved.getPushes(), replay(gameMap, solved.getMoves()));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testPlayerMakesWay() {
+        // each player has to pass the other to reach its box, which is only possible through the niche
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                ###########
+                #@b.A.B.a@#
+                #####.#####
+                ###########
+                """);
+        final var result = new Solver(gameMap).solve(BUDGET);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(2, solved.getPushes());
+        assertEquals(2, replay(gameMap, solved.getMoves()));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testAreasSolvedSeparately() {
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #########
+                #A.a.@#.#
+                #######.#
+                #@.b.B#.#
+                #########
+                """);
+        final var result = new Solver(gameMap).solve(BUDGET, 2);
+
+        final var solved = assertInstanceOf(SolverResult.Solved.class, result);
+        assertEquals(4, solved.getPushes());
+        assertEquals(4, replay(gameMap, solved.getMoves()));
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testMultiplePlayersUnsolvable() {
+        // the box of player A is stuck in a corner, and player B cannot push it
+        final var gameMap = TestHelper.parseGameMap("""
+                233
+                #######
+                #Ab.@B#
+                #a..@.#
+                #######
+                """);
+        assertInstanceOf(SolverResult.Unsolvable.class, new Solver(gameMap).solve(BUDGET));
+    }
+}
@@ -0,0 +1,84 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class TranspositionTableTest {
+
+    @Tag(TestKind.PUBLIC)
+    @Test
+    void testOfferKeepsFewestPushes() {
+        final var table = new TranspositionTable();
+        assertEquals(Integer.MAX_VALUE, table.get(42));
+
+        assertTrue(table.offer(42, 5));
+        assertFalse(table.offer(42, 5));
+        assertFalse(table.offer(42, 7));
+        assertTrue(table.offer(42, 3));
+        assertEquals(3, table.get(42));
+
+        // 0 is reserved for empty slots internally
+        assertTrue(table.offer(0, 1));
+        assertEquals(1, table.get(0));
+        assertEquals(2, table.size());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testEnsureCapacityKeepsEntries() throws MemoryLimitException {
+        final var table = new TranspositionTable();
+        for (long key = 1; key <= 100_000; key++) {
+            table.ensureCapacity(1);
+            assertTrue(table.offer(key * 0x9E3779B97F4A7C15L, (int) (key % 100)));
+        }
+        for (long key = 1; key <= 100_000; key++) {
+            assertEquals((int) (key % 100), table.get(key * 0x9E3779B97F4A7C15L));
+        }
+        assertEquals(100_000, table.size());
+
+        // too many for an array, which ends the search like its memory limit
+        assertThrows(MemoryLimitException.class, () -> table.ensureCapacity(1 << 30));
+        assertEquals(100_000, table.size());
+    }
+
+    @Tag(TestKind.HIDDEN)
+    @Test
+    void testConcurrentOffersAcceptEachKeyOnce() throws Exception {
+        final int threads = 8;
+        final int keys = 20_000;
+        final var table = new TranspositionTable();
+        table.ensureCapacity(keys);
+        final var accepted = new AtomicInteger();
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (long key = 1; key <= keys; key++) {
+                        if (table.offer(key, 10)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(keys, accepted.get());
+        assertEquals(keys, table.size());
+    }
+}
@@ -1,6 +1,7 @@
 package hk.ust.comp3021.tui;
 
 import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.actions.Hint;
 import hk.ust.comp3021.actions.InvalidInput;
 import hk.ust.comp3021.actions.Undo;
 import hk.ust.comp3021.utils.TestExtension;
@@ -77,6 +78,23 @@ class TerminalInputEngineTest {
         assertEquals(playerId, action.getInitiator());
     }
 
+    @Tag(TestKind.HIDDEN)
+    @ParameterizedTest
+    @CsvSource({
+            "?,0",
+            "hint a,0",
+            "HINT B,1",
+    })
+    void testHint(String input, int playerId) {
+        final var inputStream = fixValueStream(input);
+
+        final var inputEngine = new TerminalInputEngine(inputStream);
+        final var action = inputEngine.fetchAction();
+
+        assertTrue(action instanceof Hint);
+        assertEquals(playerId, action.getInitiator());
+    }
+
     private InputStream fixValueStream(String content) {
         final var bytes = content.getBytes(StandardCharsets.UTF_8);
         return new ByteArrayInputStream(bytes);